@@ -153,7 +153,6 @@ public final class RedisListAdapter implements List<String> {
             throw new ClassCastException();
         }
         String element = (String)o;
-        Long index = 0L;
         try {
             Long atATime = 10L;
             Long start = 0L;
@@ -164,7 +163,7 @@ public final class RedisListAdapter implements List<String> {
                     break;
                 }
                 if (range.indexOf(element) != -1) {
-                    return (int)(index + (long)range.indexOf(element));
+                    return (int)(start + (long)range.indexOf(element));
                 }
                 start = stop + 1L;
                 stop = start + atATime - 1L;
@@ -0,0 +1,19 @@
+package org.rarefiedredis.concurrency;
+
+import java.util.List;
+
+public interface IRedisCheckAndSetListener {
+
+    public void watched(List<String> keys, long nanos, boolean aborted);
+
+    public void committed(List<String> keys, int attempts, long nanos);
+
+    // The round ran but its set queued nothing because the check did not
+    // hold, e.g. the element to move was gone.
+    public void preconditionFailed(List<String> keys, int attempts, long nanos);
+
+    public void aborted(List<String> keys, int attempts, long nanos);
+
+    public void error(List<String> keys, int attempts, long nanos, Exception e);
+
+}
@@ -0,0 +1,7 @@
+package org.rarefiedredis.concurrency;
+
+public interface IRedisLeaseSelector {
+
+    boolean lease(String key);
+
+}
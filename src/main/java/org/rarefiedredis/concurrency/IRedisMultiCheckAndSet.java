@@ -0,0 +1,13 @@
+package org.rarefiedredis.concurrency;
+
+import org.rarefiedredis.redis.IRedisClient;
+
+import java.util.List;
+
+public interface IRedisMultiCheckAndSet<T> {
+
+    T get(IRedisClient client, List<String> keys);
+
+    IRedisClient set(IRedisClient multi, List<String> keys, T get);
+
+}
@@ -0,0 +1,11 @@
+package org.rarefiedredis.concurrency;
+
+import java.util.List;
+
+public interface IRedisScripter {
+
+    Object eval(String script, List<String> keys, List<String> args) throws Exception;
+
+    Object evalsha(String sha1, List<String> keys, List<String> args) throws Exception;
+
+}
@@ -3,35 +3,408 @@ package org.rarefiedredis.concurrency;
 import org.rarefiedredis.redis.IRedisClient;
 
 import java.util.List;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ArrayList;
+import java.util.TreeSet;
 
 public final class RedisCheckAndSet {
 
     private IRedisClient client;
+    private RedisCheckAndSetPool pool;
+    private RedisCheckAndSetRetryPolicy policy;
+    private RedisCheckAndSetStripes stripes;
+    private IRedisCheckAndSetListener listener;
+    private RedisLeaseLock lease;
+    private IRedisLeaseSelector selector;
 
     public RedisCheckAndSet(IRedisClient client) {
+        this(client, RedisCheckAndSetRetryPolicy.NONE);
+    }
+
+    public RedisCheckAndSet(IRedisClient client, RedisCheckAndSetRetryPolicy policy) {
         this.client = client;
+        this.pool = null;
+        this.policy = (policy == null ? RedisCheckAndSetRetryPolicy.NONE : policy);
+    }
+
+    public RedisCheckAndSet(RedisCheckAndSetPool pool) {
+        this(pool, RedisCheckAndSetRetryPolicy.NONE);
+    }
+
+    public RedisCheckAndSet(RedisCheckAndSetPool pool, RedisCheckAndSetRetryPolicy policy) {
+        this(pool.client(), policy);
+        this.pool = pool;
+    }
+
+    public RedisCheckAndSetRetryPolicy policy() {
+        return policy;
+    }
+
+    public RedisCheckAndSetPool pool() {
+        return pool;
+    }
+
+    public IRedisClient client() {
+        return client;
+    }
+
+    // Serializes transactions on the same keys within this JVM. WATCH still
+    // guards against writers in other processes.
+    public RedisCheckAndSet stripes(RedisCheckAndSetStripes stripes) {
+        this.stripes = stripes;
+        return this;
+    }
+
+    public RedisCheckAndSetStripes stripes() {
+        return stripes;
+    }
+
+    public RedisCheckAndSet listener(IRedisCheckAndSetListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    public IRedisCheckAndSetListener listener() {
+        return listener;
+    }
+
+    // Keys picked by the selector are taken pessimistically: a lease on
+    // each is held around the WATCH/MULTI/EXEC rounds, so contenders queue
+    // on the lease instead of aborting each other. Other keys stay
+    // optimistic.
+    public RedisCheckAndSet lease(RedisLeaseLock lease, IRedisLeaseSelector selector) {
+        this.lease = lease;
+        this.selector = selector;
+        return this;
+    }
+
+    private static final class SingleKeyCheckAndSet<T> implements IRedisMultiCheckAndSet<T> {
+
+        private IRedisCheckAndSet<T> cas;
+        private String key;
+
+        public SingleKeyCheckAndSet(IRedisCheckAndSet<T> cas, String key) {
+            this.cas = cas;
+            this.key = key;
+        }
+
+        @Override public T get(IRedisClient client, List<String> keys) {
+            return cas.get(client, key);
+        }
+
+        @Override public IRedisClient set(IRedisClient multi, List<String> keys, T get) {
+            return cas.set(multi, key, get);
+        }
+
+    }
+
+    // Refuses to queue anything once a lease it runs under has been taken
+    // over. The fence keys are watched too, so a takeover between the check
+    // and EXEC aborts the round.
+    private static final class FencedCheckAndSet<T> implements IRedisMultiCheckAndSet<T> {
+
+        private IRedisMultiCheckAndSet<T> cas;
+        private List<String> keys;
+        private RedisLeaseLock lease;
+        private List<RedisLeaseLock.Lease> leases;
+
+        public FencedCheckAndSet(IRedisMultiCheckAndSet<T> cas, List<String> keys, RedisLeaseLock lease, List<RedisLeaseLock.Lease> leases) {
+            this.cas = cas;
+            this.keys = keys;
+            this.lease = lease;
+            this.leases = leases;
+        }
+
+        @Override public T get(IRedisClient client, List<String> fenced) {
+            T value = cas.get(client, keys);
+            for (RedisLeaseLock.Lease l : leases) {
+                boolean current;
+                try {
+                    current = lease.current(client, l);
+                }
+                catch (Exception e) {
+                    throw new IllegalStateException("fence on " + l.key + " unreadable", e);
+                }
+                if (!current) {
+                    throw new IllegalStateException("lease on " + l.key + " lost");
+                }
+            }
+            return value;
+        }
+
+        @Override public IRedisClient set(IRedisClient multi, List<String> fenced, T get) {
+            return cas.set(multi, keys, get);
+        }
+
     }
 
     public <T> List<Object> checkAndSet(IRedisCheckAndSet<T> cas, String key) {
-        IRedisClient client = this.client.createClient();
-        if (client == null) {
-            return null;
+        return tryCheckAndSet(cas, key).replies();
+    }
+
+    public <T> List<Object> checkAndSet(IRedisMultiCheckAndSet<T> cas, String ... keys) {
+        return tryCheckAndSet(cas, Arrays.asList(keys)).replies();
+    }
+
+    public <T> List<Object> checkAndSet(IRedisMultiCheckAndSet<T> cas, List<String> keys) {
+        return tryCheckAndSet(cas, keys).replies();
+    }
+
+    public <T> RedisCheckAndSetResult<T> tryCheckAndSet(IRedisCheckAndSet<T> cas, String key) {
+        return tryCheckAndSet(new SingleKeyCheckAndSet<T>(cas, key), Arrays.asList(key));
+    }
+
+    public <T> RedisCheckAndSetResult<T> tryCheckAndSet(IRedisMultiCheckAndSet<T> cas, String ... keys) {
+        return tryCheckAndSet(cas, Arrays.asList(keys));
+    }
+
+    public <T> RedisCheckAndSetResult<T> tryCheckAndSet(IRedisMultiCheckAndSet<T> cas, List<String> keys) {
+        return tryCheckAndSet(cas, keys, policy);
+    }
+
+    // A single round that still takes the leases and reports to the
+    // listener, for callers that decide for themselves what to retry.
+    <T> RedisCheckAndSetResult<T> tryOnce(IRedisMultiCheckAndSet<T> cas, List<String> keys) {
+        return tryCheckAndSet(cas, keys, RedisCheckAndSetRetryPolicy.NONE);
+    }
+
+    private <T> RedisCheckAndSetResult<T> tryCheckAndSet(IRedisMultiCheckAndSet<T> cas, List<String> keys, RedisCheckAndSetRetryPolicy policy) {
+        long start = System.nanoTime();
+        if (keys == null || keys.isEmpty()) {
+            return new RedisCheckAndSetResult<T>(RedisCheckAndSetResult.Status.ERROR, 0, 0L, null, null, new IllegalArgumentException("no keys to watch"));
         }
-        List<Object> replies = null;
+        keys = Collections.unmodifiableList(keys);
+        List<RedisLeaseLock.Lease> leases = acquireLeases(keys);
+        if (leases == null) {
+            Exception e = new IllegalStateException("lease not acquired");
+            if (listener != null) {
+                listener.error(keys, 0, System.nanoTime() - start, e);
+            }
+            return new RedisCheckAndSetResult<T>(RedisCheckAndSetResult.Status.ERROR, 0, System.nanoTime() - start, null, null, e);
+        }
+        try {
+            if (leases.isEmpty()) {
+                return tryCheckAndSet(cas, keys, start, policy);
+            }
+            List<String> fenced = new ArrayList<String>(keys);
+            for (RedisLeaseLock.Lease l : leases) {
+                fenced.add(RedisLeaseLock.fenceKey(l.key));
+            }
+            return tryCheckAndSet(new FencedCheckAndSet<T>(cas, keys, lease, leases), Collections.unmodifiableList(fenced), start, policy);
+        }
+        finally {
+            releaseLeases(leases);
+        }
+    }
+
+    private <T> RedisCheckAndSetResult<T> tryCheckAndSet(IRedisMultiCheckAndSet<T> cas, List<String> keys, long start, RedisCheckAndSetRetryPolicy policy) {
+        for (int attempt = 1; ; ++attempt) {
+            RedisCheckAndSetResult<T> result;
+            try {
+                result = attempt(cas, keys);
+            }
+            catch (Exception e) {
+                long elapsed = System.nanoTime() - start;
+                if (listener != null) {
+                    listener.error(keys, attempt, elapsed, e);
+                }
+                return new RedisCheckAndSetResult<T>(RedisCheckAndSetResult.Status.ERROR, attempt, elapsed, null, null, e);
+            }
+            if (result.status() != RedisCheckAndSetResult.Status.ABORTED) {
+                long elapsed = System.nanoTime() - start;
+                if (listener != null) {
+                    finished(keys, attempt, elapsed, result.status());
+                }
+                return new RedisCheckAndSetResult<T>(result.status(), attempt, elapsed, result.replies(), result.value(), null);
+            }
+            // A null EXEC means a watched key changed underneath us.
+            long backoff = policy.backoff(attempt);
+            long elapsed = (System.nanoTime() - start) / 1000000L;
+            if (!policy.shouldRetry(attempt, elapsed, backoff) || !sleep(backoff)) {
+                elapsed = System.nanoTime() - start;
+                if (listener != null) {
+                    listener.aborted(keys, attempt, elapsed);
+                }
+                return new RedisCheckAndSetResult<T>(RedisCheckAndSetResult.Status.ABORTED, attempt, elapsed, null, null, null);
+            }
+        }
+    }
+
+    // A single MULTI/EXEC with no WATCH, for writes that are safe whatever
+    // happens to the keys in between, such as appending to a queue. Nothing
+    // can abort it, so there is no retry, striping or leasing.
+    public <T> RedisCheckAndSetResult<T> tryExec(IRedisCheckAndSet<T> cas, String key) {
+        return tryExec(new SingleKeyCheckAndSet<T>(cas, key), Arrays.asList(key));
+    }
+
+    public <T> RedisCheckAndSetResult<T> tryExec(IRedisMultiCheckAndSet<T> cas, List<String> keys) {
+        long start = System.nanoTime();
+        keys = Collections.unmodifiableList(keys);
+        RedisCheckAndSetResult<T> result;
         try {
-            client.watch(key);
-            T value = cas.get(client, key);
-            IRedisClient multi = client.multi();
-            multi = cas.set(multi, key, value);
-            replies = multi.exec();
+            result = watch(cas, keys, false);
         }
         catch (Exception e) {
-            replies = null;
+            long elapsed = System.nanoTime() - start;
+            if (listener != null) {
+                listener.error(keys, 1, elapsed, e);
+            }
+            return new RedisCheckAndSetResult<T>(RedisCheckAndSetResult.Status.ERROR, 1, elapsed, null, null, e);
+        }
+        long elapsed = System.nanoTime() - start;
+        if (listener != null) {
+            finished(keys, 1, elapsed, result.status());
+        }
+        return new RedisCheckAndSetResult<T>(result.status(), 1, elapsed, result.replies(), result.value(), null);
+    }
+
+    private void finished(List<String> keys, int attempts, long elapsed, RedisCheckAndSetResult.Status status) {
+        if (status == RedisCheckAndSetResult.Status.PRECONDITION_FAILED) {
+            listener.preconditionFailed(keys, attempts, elapsed);
+        }
+        else {
+            listener.committed(keys, attempts, elapsed);
+        }
+    }
+
+    // One WATCH/MULTI/EXEC round. Returns a committed, precondition failed
+    // or aborted result and throws when the round failed.
+    private <T> RedisCheckAndSetResult<T> attempt(IRedisMultiCheckAndSet<T> cas, List<String> keys) throws Exception {
+        RedisCheckAndSetStripes stripes = this.stripes;
+        if (stripes == null) {
+            return watch(cas, keys);
+        }
+        int[] locked = stripes.lock(keys);
+        try {
+            return watch(cas, keys);
+        }
+        finally {
+            stripes.unlock(locked);
+        }
+    }
+
+    private <T> RedisCheckAndSetResult<T> watch(IRedisMultiCheckAndSet<T> cas, List<String> keys) throws Exception {
+        return watch(cas, keys, true);
+    }
+
+    private <T> RedisCheckAndSetResult<T> watch(IRedisMultiCheckAndSet<T> cas, List<String> keys, boolean watching) throws Exception {
+        IRedisClient client = acquire();
+        if (client == null) {
+            throw new IllegalStateException("no connection available");
+        }
+        IRedisClient multi = null;
+        List<Object> replies = null;
+        boolean error = true;
+        long start = System.nanoTime();
+        try {
+            if (watching) {
+                for (String key : keys) {
+                    client.watch(key);
+                }
+            }
+            T value = cas.get(client, keys);
+            multi = client.multi();
+            IRedisClient queued = cas.set(multi, keys, value);
+            if (queued == null) {
+                // Keeps multi, so the connection is discarded before release.
+                throw new IllegalStateException("set phase failed");
+            }
+            replies = queued.exec();
+            error = false;
+            long elapsed = System.nanoTime() - start;
+            if (replies == null) {
+                return new RedisCheckAndSetResult<T>(RedisCheckAndSetResult.Status.ABORTED, 1, elapsed, null, null, null);
+            }
+            if (replies.isEmpty()) {
+                // The set phase queued nothing: its check did not hold.
+                return new RedisCheckAndSetResult<T>(RedisCheckAndSetResult.Status.PRECONDITION_FAILED, 1, elapsed, replies, null, null);
+            }
+            return new RedisCheckAndSetResult<T>(RedisCheckAndSetResult.Status.COMMITTED, 1, elapsed, replies, value, null);
         }
         finally {
+            if (listener != null) {
+                if (watching) {
+                    listener.watched(keys, System.nanoTime() - start, !error && replies == null);
+                }
+            }
+            release(client, multi, error);
+        }
+    }
+
+    private List<RedisLeaseLock.Lease> acquireLeases(List<String> keys) {
+        RedisLeaseLock lease = this.lease;
+        IRedisLeaseSelector selector = this.selector;
+        List<RedisLeaseLock.Lease> leases = new ArrayList<RedisLeaseLock.Lease>();
+        if (lease == null || selector == null) {
+            return leases;
+        }
+        // Sorted so that overlapping key sets take their leases in the same
+        // order.
+        List<String> sorted = new ArrayList<String>(new TreeSet<String>(keys));
+        for (String key : sorted) {
+            if (!selector.lease(key)) {
+                continue;
+            }
+            RedisLeaseLock.Lease l = lease.acquire(key);
+            if (l == null) {
+                releaseLeases(leases);
+                return null;
+            }
+            leases.add(l);
+        }
+        return leases;
+    }
+
+    private void releaseLeases(List<RedisLeaseLock.Lease> leases) {
+        for (int i = leases.size() - 1; i >= 0; --i) {
+            lease.release(leases.get(i));
+        }
+    }
+
+    private IRedisClient acquire() {
+        if (pool == null) {
+            return client.createClient();
+        }
+        return pool.borrow();
+    }
+
+    private void release(IRedisClient client, IRedisClient multi, boolean error) {
+        if (pool == null) {
             client.close();
+            return;
+        }
+        if (!error) {
+            pool.release(client, true);
+            return;
+        }
+        if (multi != null) {
+            // The connection may still be inside MULTI; only a successful
+            // DISCARD lets it go back to the pool.
+            try {
+                multi.discard();
+            }
+            catch (Exception e) {
+                pool.invalidate(client);
+                return;
+            }
+        }
+        pool.release(client, false);
+    }
+
+    private boolean sleep(long millis) {
+        if (millis <= 0L) {
+            Thread.yield();
+            return true;
+        }
+        try {
+            Thread.sleep(millis);
+            return true;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         }
-        return replies;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,161 @@
+package org.rarefiedredis.concurrency;
+
+import org.rarefiedredis.redis.IRedisClient;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+public final class RedisCheckAndSetBatch {
+
+    private static final class Entry<T> {
+
+        private IRedisCheckAndSet<T> cas;
+        private String key;
+        private T value;
+
+        public Entry(IRedisCheckAndSet<T> cas, String key) {
+            this.cas = cas;
+            this.key = key;
+        }
+
+        public void get(IRedisClient client) {
+            value = cas.get(client, key);
+        }
+
+        public IRedisClient set(IRedisClient multi) {
+            return cas.set(multi, key, value);
+        }
+
+    }
+
+    private final class BatchCheckAndSet implements IRedisMultiCheckAndSet<Boolean> {
+
+        private List<Entry<?>> entries;
+        private int[] queued;
+        private boolean[] failed;
+
+        public BatchCheckAndSet(List<Entry<?>> entries) {
+            this.entries = entries;
+            this.queued = new int[entries.size()];
+            this.failed = new boolean[entries.size()];
+        }
+
+        @Override public Boolean get(IRedisClient client, List<String> keys) {
+            for (Entry<?> entry : entries) {
+                entry.get(client);
+            }
+            return Boolean.TRUE;
+        }
+
+        @Override public IRedisClient set(IRedisClient multi, List<String> keys, Boolean get) {
+            Arrays.fill(queued, 0);
+            Arrays.fill(failed, false);
+            for (int i = 0; i < entries.size(); ++i) {
+                RedisCommandCounter counter = new RedisCommandCounter(multi);
+                // Whatever an entry queued before giving up still runs, so
+                // it is counted either way.
+                failed[i] = (entries.get(i).set(counter.client()) == null);
+                queued[i] = counter.queued();
+            }
+            return multi;
+        }
+
+        // An entry committed when EXEC ran, it queued something and none of
+        // its replies is an error.
+        public void committed(List<Object> replies, Boolean[] committed, int from) {
+            int at = 0;
+            for (int i = 0; i < entries.size(); ++i) {
+                boolean ok = !failed[i] && queued[i] > 0;
+                for (int q = 0; q < queued[i]; ++q, ++at) {
+                    if (at >= replies.size() || replies.get(at) instanceof Exception) {
+                        ok = false;
+                    }
+                }
+                committed[from + i] = ok;
+            }
+        }
+
+    }
+
+    private RedisCheckAndSet cas;
+    private List<Entry<?>> entries;
+
+    public RedisCheckAndSetBatch(RedisCheckAndSet cas) {
+        this.cas = cas;
+        this.entries = new ArrayList<Entry<?>>();
+    }
+
+    // Every get runs before any set, so a check-and-set that keeps state
+    // between the two would have it overwritten by a later entry; each
+    // entry needs its own instance.
+    public <T> RedisCheckAndSetBatch add(IRedisCheckAndSet<T> cas, String key) {
+        for (Entry<?> entry : entries) {
+            if (entry.cas == cas) {
+                throw new IllegalArgumentException("check-and-set already in the batch");
+            }
+        }
+        entries.add(new Entry<T>(cas, key));
+        return this;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Watches every key and runs every get on one connection, then commits
+    // all of the sets in one MULTI/EXEC. An aborted or failed round is
+    // split in half and each half is tried again, so only the subsets
+    // holding a conflicting key pay for further rounds. Single entries
+    // fall back to the retry policy of the underlying RedisCheckAndSet.
+    // Every round takes the same leases and reports to the same listener
+    // as a single check-and-set. Returns whether each entry committed, in
+    // the order they were added.
+    public List<Boolean> checkAndSet() {
+        Boolean[] committed = new Boolean[entries.size()];
+        Arrays.fill(committed, Boolean.FALSE);
+        if (!entries.isEmpty()) {
+            checkAndSet(0, entries.size(), committed);
+        }
+        entries = new ArrayList<Entry<?>>();
+        return Arrays.asList(committed);
+    }
+
+    private void checkAndSet(int from, int to, Boolean[] committed) {
+        List<Entry<?>> range = entries.subList(from, to);
+        BatchCheckAndSet batch = new BatchCheckAndSet(range);
+        RedisCheckAndSetResult<Boolean> result;
+        if (to - from == 1) {
+            result = cas.tryCheckAndSet(batch, keys(range));
+        }
+        else {
+            result = cas.tryOnce(batch, keys(range));
+        }
+        switch (result.status()) {
+        case COMMITTED:
+            batch.committed(result.replies(), committed, from);
+            return;
+        case PRECONDITION_FAILED:
+            // Nothing was queued by any entry; there is nothing to retry.
+            return;
+        default:
+            if (to - from == 1) {
+                return;
+            }
+            int mid = from + (to - from) / 2;
+            checkAndSet(from, mid, committed);
+            checkAndSet(mid, to, committed);
+        }
+    }
+
+    private List<String> keys(List<Entry<?>> range) {
+        Set<String> keys = new LinkedHashSet<String>();
+        for (Entry<?> entry : range) {
+            keys.add(entry.key);
+        }
+        return new ArrayList<String>(keys);
+    }
+
+}
@@ -0,0 +1,177 @@
+package org.rarefiedredis.concurrency;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public final class RedisCheckAndSetMetrics implements IRedisCheckAndSetListener {
+
+    public static final class Snapshot {
+
+        public final long committed;
+        public final long preconditionFailed;
+        public final long aborted;
+        public final long errors;
+        public final long watchAborts;
+        public final long[] attempts;
+        public final long latencyP50;
+        public final long latencyP99;
+        public final long latencyMax;
+        public final long watchP50;
+        public final long watchP99;
+        public final long watchMax;
+        public final List<Map.Entry<String, Long>> hotKeys;
+
+        private Snapshot(RedisCheckAndSetMetrics metrics) {
+            committed = metrics.committed.get();
+            preconditionFailed = metrics.preconditionFailed.get();
+            aborted = metrics.aborted.get();
+            errors = metrics.errors.get();
+            watchAborts = metrics.watchAborts.get();
+            attempts = new long[metrics.attempts.length()];
+            for (int i = 0; i < attempts.length; ++i) {
+                attempts[i] = metrics.attempts.get(i);
+            }
+            latencyP50 = metrics.latency.percentile(50d);
+            latencyP99 = metrics.latency.percentile(99d);
+            latencyMax = metrics.latency.max();
+            watchP50 = metrics.watch.percentile(50d);
+            watchP99 = metrics.watch.percentile(99d);
+            watchMax = metrics.watch.max();
+            hotKeys = metrics.hotKeys();
+        }
+
+    }
+
+    private AtomicLong committed = new AtomicLong();
+    private AtomicLong preconditionFailed = new AtomicLong();
+    private AtomicLong aborted = new AtomicLong();
+    private AtomicLong errors = new AtomicLong();
+    private AtomicLong watchAborts = new AtomicLong();
+    private AtomicLong operations = new AtomicLong();
+    private AtomicLongArray attempts;
+    private RedisLatencyHistogram latency = new RedisLatencyHistogram();
+    private RedisLatencyHistogram watch = new RedisLatencyHistogram();
+    private ConcurrentHashMap<String, AtomicLong> samples = new ConcurrentHashMap<String, AtomicLong>();
+    private int sampleRate;
+    private int maxSampledKeys;
+    private int topN;
+
+    public RedisCheckAndSetMetrics() {
+        this(16, 10, 1024, 10);
+    }
+
+    // attempts[i] counts operations that finished after i + 1 attempts; the
+    // last slot also holds everything above. One in sampleRate operations
+    // feeds the hot key table, which keeps at most maxSampledKeys keys.
+    public RedisCheckAndSetMetrics(int maxAttempts, int sampleRate, int maxSampledKeys, int topN) {
+        this.attempts = new AtomicLongArray(Math.max(1, maxAttempts));
+        this.sampleRate = Math.max(1, sampleRate);
+        this.maxSampledKeys = Math.max(1, maxSampledKeys);
+        this.topN = topN;
+    }
+
+    @Override public void watched(List<String> keys, long nanos, boolean aborted) {
+        watch.record(nanos);
+        if (aborted) {
+            watchAborts.incrementAndGet();
+        }
+    }
+
+    @Override public void committed(List<String> keys, int attempts, long nanos) {
+        committed.incrementAndGet();
+        finished(keys, attempts, nanos);
+    }
+
+    @Override public void preconditionFailed(List<String> keys, int attempts, long nanos) {
+        preconditionFailed.incrementAndGet();
+        finished(keys, attempts, nanos);
+    }
+
+    @Override public void aborted(List<String> keys, int attempts, long nanos) {
+        aborted.incrementAndGet();
+        finished(keys, attempts, nanos);
+    }
+
+    @Override public void error(List<String> keys, int attempts, long nanos, Exception e) {
+        errors.incrementAndGet();
+        finished(keys, attempts, nanos);
+    }
+
+    public RedisLatencyHistogram latency() {
+        return latency;
+    }
+
+    public RedisLatencyHistogram watch() {
+        return watch;
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    public List<Map.Entry<String, Long>> hotKeys() {
+        List<Map.Entry<String, Long>> hot = new ArrayList<Map.Entry<String, Long>>(samples.size());
+        for (Map.Entry<String, AtomicLong> entry : samples.entrySet()) {
+            hot.add(new AbstractMap.SimpleImmutableEntry<String, Long>(entry.getKey(), entry.getValue().get()));
+        }
+        Collections.sort(hot, new Comparator<Map.Entry<String, Long>>() {
+                @Override public int compare(Map.Entry<String, Long> a, Map.Entry<String, Long> b) {
+                    return b.getValue().compareTo(a.getValue());
+                }
+            });
+        return (hot.size() > topN ? new ArrayList<Map.Entry<String, Long>>(hot.subList(0, topN)) : hot);
+    }
+
+    private void finished(List<String> keys, int attempts, long nanos) {
+        latency.record(nanos);
+        int slot = Math.min(Math.max(attempts, 1), this.attempts.length()) - 1;
+        this.attempts.incrementAndGet(slot);
+        if (operations.incrementAndGet() % sampleRate == 0L) {
+            sample(keys);
+        }
+    }
+
+    private void sample(List<String> keys) {
+        for (String key : keys) {
+            AtomicLong count = samples.get(key);
+            if (count == null) {
+                if (samples.size() >= maxSampledKeys) {
+                    evict();
+                }
+                AtomicLong created = new AtomicLong();
+                count = samples.putIfAbsent(key, created);
+                if (count == null) {
+                    count = created;
+                }
+            }
+            count.incrementAndGet();
+        }
+    }
+
+    // Drops the colder half of the table so that new hot keys can get in.
+    private synchronized void evict() {
+        if (samples.size() < maxSampledKeys) {
+            return;
+        }
+        List<Map.Entry<String, Long>> hot = new ArrayList<Map.Entry<String, Long>>(samples.size());
+        for (Map.Entry<String, AtomicLong> entry : samples.entrySet()) {
+            hot.add(new AbstractMap.SimpleImmutableEntry<String, Long>(entry.getKey(), entry.getValue().get()));
+        }
+        Collections.sort(hot, new Comparator<Map.Entry<String, Long>>() {
+                @Override public int compare(Map.Entry<String, Long> a, Map.Entry<String, Long> b) {
+                    return a.getValue().compareTo(b.getValue());
+                }
+            });
+        for (int i = 0; i < hot.size() / 2; ++i) {
+            samples.remove(hot.get(i).getKey());
+        }
+    }
+
+}
@@ -0,0 +1,231 @@
+package org.rarefiedredis.concurrency;
+
+import org.rarefiedredis.redis.IRedisClient;
+
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class RedisCheckAndSetPool {
+
+    private static final class Connection {
+
+        public final IRedisClient client;
+        public long released;
+
+        public Connection(IRedisClient client) {
+            this.client = client;
+            this.released = System.currentTimeMillis();
+        }
+
+    }
+
+    private IRedisClient client;
+    private int maxSize;
+    private long maxWait;
+    private long validateAfter;
+    private volatile boolean closed;
+    private Semaphore permits;
+    private LinkedBlockingDeque<Connection> idle;
+    private ThreadLocal<Connection> affinity;
+    private ThreadLocal<Connection> borrowed;
+    private AtomicLong borrows = new AtomicLong();
+    private AtomicLong creates = new AtomicLong();
+    private AtomicLong destroys = new AtomicLong();
+    private AtomicLong affinityHits = new AtomicLong();
+    private AtomicLong waits = new AtomicLong();
+    private AtomicLong timeouts = new AtomicLong();
+    private AtomicLong waitNanos = new AtomicLong();
+    private AtomicLong maxWaitNanos = new AtomicLong();
+
+    public RedisCheckAndSetPool(IRedisClient client, int maxSize) {
+        this(client, maxSize, 1000L, 30000L);
+    }
+
+    public RedisCheckAndSetPool(IRedisClient client, int maxSize, long maxWait, long validateAfter) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+        this.client = client;
+        this.maxSize = maxSize;
+        this.maxWait = maxWait;
+        this.validateAfter = validateAfter;
+        this.closed = false;
+        this.permits = new Semaphore(maxSize, true);
+        this.idle = new LinkedBlockingDeque<Connection>(maxSize);
+        this.affinity = new ThreadLocal<Connection>();
+        this.borrowed = new ThreadLocal<Connection>();
+    }
+
+    public IRedisClient client() {
+        return client;
+    }
+
+    public IRedisClient borrow() {
+        if (closed) {
+            return null;
+        }
+        long start = System.nanoTime();
+        boolean acquired = permits.tryAcquire();
+        if (!acquired) {
+            waits.incrementAndGet();
+            try {
+                acquired = permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            long waited = System.nanoTime() - start;
+            waitNanos.addAndGet(waited);
+            long max = maxWaitNanos.get();
+            while (waited > max && !maxWaitNanos.compareAndSet(max, waited)) {
+                max = maxWaitNanos.get();
+            }
+        }
+        if (!acquired) {
+            timeouts.incrementAndGet();
+            return null;
+        }
+        Connection connection = take();
+        if (connection == null) {
+            permits.release();
+            return null;
+        }
+        borrows.incrementAndGet();
+        borrowed.set(connection);
+        return connection.client;
+    }
+
+    // A clean connection finished its transaction with EXEC or DISCARD and
+    // has nothing watched. Anything else is UNWATCHed before it goes back.
+    public void release(IRedisClient client, boolean clean) {
+        Connection connection = borrowed.get();
+        borrowed.remove();
+        if (connection == null || connection.client != client) {
+            connection = new Connection(client);
+        }
+        if (!clean && !check(connection)) {
+            destroy(connection);
+        }
+        else if (closed || !idle.offerFirst(connection)) {
+            destroy(connection);
+        }
+        else {
+            connection.released = System.currentTimeMillis();
+            affinity.set(connection);
+        }
+        permits.release();
+    }
+
+    public void invalidate(IRedisClient client) {
+        borrowed.remove();
+        destroy(new Connection(client));
+        permits.release();
+    }
+
+    public void close() {
+        closed = true;
+        for (Connection connection = idle.pollFirst(); connection != null; connection = idle.pollFirst()) {
+            destroy(connection);
+        }
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    public long size() {
+        return creates.get() - destroys.get();
+    }
+
+    public int idle() {
+        return idle.size();
+    }
+
+    public int active() {
+        return maxSize - permits.availablePermits();
+    }
+
+    public long borrows() {
+        return borrows.get();
+    }
+
+    public long creates() {
+        return creates.get();
+    }
+
+    public long destroys() {
+        return destroys.get();
+    }
+
+    public long affinityHits() {
+        return affinityHits.get();
+    }
+
+    public long waits() {
+        return waits.get();
+    }
+
+    public long timeouts() {
+        return timeouts.get();
+    }
+
+    public long waitTime(TimeUnit unit) {
+        return unit.convert(waitNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long maxWaitTime(TimeUnit unit) {
+        return unit.convert(maxWaitNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    private Connection take() {
+        while (true) {
+            Connection connection = null;
+            Connection preferred = affinity.get();
+            if (preferred != null && idle.remove(preferred)) {
+                connection = preferred;
+                affinityHits.incrementAndGet();
+            }
+            else {
+                connection = idle.pollFirst();
+            }
+            if (connection == null) {
+                IRedisClient c = client.createClient();
+                if (c == null) {
+                    return null;
+                }
+                creates.incrementAndGet();
+                return new Connection(c);
+            }
+            if (validateAfter >= 0L && System.currentTimeMillis() - connection.released > validateAfter && !check(connection)) {
+                destroy(connection);
+                continue;
+            }
+            return connection;
+        }
+    }
+
+    private boolean check(Connection connection) {
+        try {
+            connection.client.unwatch();
+            return true;
+        }
+        catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void destroy(Connection connection) {
+        if (affinity.get() == connection) {
+            affinity.remove();
+        }
+        try {
+            connection.client.close();
+        }
+        catch (Exception e) {
+        }
+        destroys.incrementAndGet();
+    }
+
+}
@@ -0,0 +1,66 @@
+package org.rarefiedredis.concurrency;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public final class RedisCheckAndSetResult<T> {
+
+    public enum Status {
+        // EXEC ran the queued commands.
+        COMMITTED,
+        // A watched key changed, on every attempt the retry policy allowed.
+        ABORTED,
+        // The check did not hold, so nothing was queued and nothing changed.
+        PRECONDITION_FAILED,
+        // The connection or a command failed.
+        ERROR
+    }
+
+    private final Status status;
+    private final int attempts;
+    private final long elapsed;
+    private final List<Object> replies;
+    private final T value;
+    private final Exception error;
+
+    public RedisCheckAndSetResult(Status status, int attempts, long elapsed, List<Object> replies, T value, Exception error) {
+        this.status = status;
+        this.attempts = attempts;
+        this.elapsed = elapsed;
+        this.replies = replies;
+        this.value = value;
+        this.error = error;
+    }
+
+    public Status status() {
+        return status;
+    }
+
+    public boolean committed() {
+        return status == Status.COMMITTED;
+    }
+
+    public int attempts() {
+        return attempts;
+    }
+
+    public long elapsed(TimeUnit unit) {
+        return unit.convert(elapsed, TimeUnit.NANOSECONDS);
+    }
+
+    // The EXEC replies. Empty when the precondition failed, null when the
+    // transaction aborted or errored.
+    public List<Object> replies() {
+        return replies;
+    }
+
+    // What the get phase returned, when the transaction committed.
+    public T value() {
+        return value;
+    }
+
+    public Exception error() {
+        return error;
+    }
+
+}
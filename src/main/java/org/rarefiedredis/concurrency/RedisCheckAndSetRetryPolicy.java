@@ -0,0 +1,70 @@
+package org.rarefiedredis.concurrency;
+
+import java.util.Random;
+
+public final class RedisCheckAndSetRetryPolicy {
+
+    public static final RedisCheckAndSetRetryPolicy NONE = new RedisCheckAndSetRetryPolicy(1, 0L, 0L, 0L);
+    public static final RedisCheckAndSetRetryPolicy DEFAULT = new RedisCheckAndSetRetryPolicy(5, 2L, 100L, 1000L);
+
+    private final int maxAttempts;
+    private final long baseBackoff;
+    private final long maxBackoff;
+    private final long deadline;
+    private final Random random = new Random();
+
+    public RedisCheckAndSetRetryPolicy(int maxAttempts, long baseBackoff, long maxBackoff, long deadline) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        if (baseBackoff < 0L || maxBackoff < 0L || deadline < 0L) {
+            throw new IllegalArgumentException("backoff and deadline must not be negative");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseBackoff = baseBackoff;
+        this.maxBackoff = maxBackoff;
+        this.deadline = deadline;
+    }
+
+    public int maxAttempts() {
+        return maxAttempts;
+    }
+
+    public long baseBackoff() {
+        return baseBackoff;
+    }
+
+    public long maxBackoff() {
+        return maxBackoff;
+    }
+
+    // Milliseconds. 0 means no deadline.
+    public long deadline() {
+        return deadline;
+    }
+
+    // Exponential backoff with full jitter, so contenders that aborted
+    // together do not retry together.
+    public long backoff(int attempt) {
+        if (baseBackoff == 0L || maxBackoff == 0L) {
+            return 0L;
+        }
+        int shift = Math.min(Math.max(attempt - 1, 0), 30);
+        long cap = Math.min(maxBackoff, baseBackoff << shift);
+        if (cap <= 0L) {
+            cap = maxBackoff;
+        }
+        return (long)(random.nextDouble() * (double)(cap + 1L));
+    }
+
+    public boolean shouldRetry(int attempt, long elapsed, long backoff) {
+        if (attempt >= maxAttempts) {
+            return false;
+        }
+        if (deadline > 0L && elapsed + backoff >= deadline) {
+            return false;
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,99 @@
+package org.rarefiedredis.concurrency;
+
+import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+public final class RedisCheckAndSetStripes {
+
+    private ReentrantLock[] locks;
+    private int mask;
+    private AtomicLong acquisitions = new AtomicLong();
+    private AtomicLong contentions = new AtomicLong();
+    private AtomicLong waitNanos = new AtomicLong();
+
+    public RedisCheckAndSetStripes() {
+        this(64);
+    }
+
+    public RedisCheckAndSetStripes(int stripes) {
+        if (stripes < 1 || stripes > (1 << 16)) {
+            throw new IllegalArgumentException("stripes must be between 1 and 65536");
+        }
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; ++i) {
+            locks[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    public int stripes() {
+        return locks.length;
+    }
+
+    public int stripe(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return h & mask;
+    }
+
+    // Stripes are always taken in ascending order so that transactions
+    // over overlapping key sets cannot deadlock.
+    public int[] lock(List<String> keys) {
+        int[] stripes = new int[keys.size()];
+        int count = 0;
+        for (String key : keys) {
+            stripes[count++] = stripe(key);
+        }
+        Arrays.sort(stripes);
+        int unique = 0;
+        for (int i = 0; i < count; ++i) {
+            if (unique == 0 || stripes[unique - 1] != stripes[i]) {
+                stripes[unique++] = stripes[i];
+            }
+        }
+        stripes = Arrays.copyOf(stripes, unique);
+        for (int stripe : stripes) {
+            ReentrantLock lock = locks[stripe];
+            if (!lock.tryLock()) {
+                // Another thread in this JVM is inside a transaction on this
+                // stripe. Without the lock both would WATCH and one would
+                // most likely abort.
+                contentions.incrementAndGet();
+                long start = System.nanoTime();
+                lock.lock();
+                waitNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+        acquisitions.incrementAndGet();
+        return stripes;
+    }
+
+    public void unlock(int[] stripes) {
+        for (int i = stripes.length - 1; i >= 0; --i) {
+            locks[stripes[i]].unlock();
+        }
+    }
+
+    public long acquisitions() {
+        return acquisitions.get();
+    }
+
+    // Acquisitions that had to wait for another transaction on the same
+    // stripe. Not every one of them would have aborted on WATCH: stripes
+    // are shared by unrelated keys too.
+    public long contended() {
+        return contentions.get();
+    }
+
+    public long waitTime(TimeUnit unit) {
+        return unit.convert(waitNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+}
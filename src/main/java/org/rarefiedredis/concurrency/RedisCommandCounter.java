@@ -0,0 +1,44 @@
+package org.rarefiedredis.concurrency;
+
+import org.rarefiedredis.redis.IRedisClient;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+// Counts the commands queued through a MULTI handle, so that EXEC's
+// replies can be split back up by whoever queued them.
+public final class RedisCommandCounter implements InvocationHandler {
+
+    private IRedisClient multi;
+    private IRedisClient counted;
+    private int queued;
+
+    public RedisCommandCounter(IRedisClient multi) {
+        this.multi = multi;
+        this.counted = (IRedisClient)Proxy.newProxyInstance(IRedisClient.class.getClassLoader(), new Class<?>[] { IRedisClient.class }, this);
+    }
+
+    // The handle to queue commands through.
+    public IRedisClient client() {
+        return counted;
+    }
+
+    public int queued() {
+        return queued;
+    }
+
+    @Override public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() != Object.class) {
+            ++queued;
+        }
+        try {
+            return method.invoke(multi, args);
+        }
+        catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+package org.rarefiedredis.concurrency;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class RedisExecutors {
+
+    private static final class Holder {
+        public static final ExecutorService DEFAULT = newExecutor("rarefied-redis");
+    }
+
+    private RedisExecutors() {
+    }
+
+    public static ExecutorService defaultExecutor() {
+        return Holder.DEFAULT;
+    }
+
+    // Virtual threads where the running JVM has them (21+), otherwise an
+    // unbounded pool of daemon threads. Looked up reflectively so that
+    // the library still builds and runs on older JDKs.
+    public static ExecutorService newExecutor(final String name) {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService)method.invoke(null);
+        }
+        catch (Exception e) {
+        }
+        final AtomicInteger count = new AtomicInteger();
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+    }
+
+}
@@ -0,0 +1,39 @@
+package org.rarefiedredis.concurrency;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.List;
+
+// Runs scripts over a Jedis pool, since IRedisClient has no EVAL. Server
+// errors, NOSCRIPT included, surface as JedisDataException with the
+// server's message.
+public final class RedisJedisScripter implements IRedisScripter {
+
+    private JedisPool pool;
+
+    public RedisJedisScripter(JedisPool pool) {
+        this.pool = pool;
+    }
+
+    @Override public Object eval(String script, List<String> keys, List<String> args) throws Exception {
+        Jedis jedis = pool.getResource();
+        try {
+            return jedis.eval(script, keys, args);
+        }
+        finally {
+            jedis.close();
+        }
+    }
+
+    @Override public Object evalsha(String sha1, List<String> keys, List<String> args) throws Exception {
+        Jedis jedis = pool.getResource();
+        try {
+            return jedis.evalsha(sha1, keys, args);
+        }
+        finally {
+            jedis.close();
+        }
+    }
+
+}
@@ -0,0 +1,363 @@
+package org.rarefiedredis.concurrency;
+
+import org.rarefiedredis.redis.IRedisClient;
+
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public final class RedisLeaseLock {
+
+    public static final class Lease {
+
+        public final String key;
+        public final String token;
+        public final long fence;
+        private volatile boolean held;
+        private ScheduledFuture<?> renewal;
+        private AtomicBoolean renewing = new AtomicBoolean();
+
+        private Lease(String key, String token, long fence) {
+            this.key = key;
+            this.token = token;
+            this.fence = fence;
+            this.held = true;
+        }
+
+        public boolean held() {
+            return held;
+        }
+
+    }
+
+    private static final long HEARTBEAT = 3000L;
+
+    private IRedisClient client;
+    private RedisCheckAndSet cas;
+    private long leaseTime;
+    private long waitTime;
+    private long pollInterval;
+    private ScheduledExecutorService scheduler;
+    private ExecutorService executor;
+
+    public RedisLeaseLock(IRedisClient client) {
+        this(client, 10000L, 5000L);
+    }
+
+    public RedisLeaseLock(IRedisClient client, long leaseTime, long waitTime) {
+        this(client, leaseTime, waitTime, RedisExecutors.defaultExecutor());
+    }
+
+    // Renewals are only scheduled on the lock's own thread; the round trips
+    // run on executor, so one slow renewal does not hold up the others.
+    public RedisLeaseLock(IRedisClient client, long leaseTime, long waitTime, ExecutorService executor) {
+        this.client = client;
+        this.cas = new RedisCheckAndSet(client);
+        this.leaseTime = leaseTime;
+        this.waitTime = waitTime;
+        this.pollInterval = Math.max(1L, Math.min(100L, leaseTime / 10L));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "rarefied-redis-lease");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        this.executor = executor;
+    }
+
+    public long leaseTime() {
+        return leaseTime;
+    }
+
+    public long waitTime() {
+        return waitTime;
+    }
+
+    public static String lockKey(String key) {
+        return key + ":lease";
+    }
+
+    public static String fenceKey(String key) {
+        return key + ":lease:fence";
+    }
+
+    public static String waitersKey(String key) {
+        return key + ":lease:waiters";
+    }
+
+    private static String heartbeatKey(String key, String id) {
+        return key + ":lease:waiter:" + id;
+    }
+
+    private static String signalKey(String key, String id) {
+        return key + ":lease:signal:" + id;
+    }
+
+    // Only succeeds when nobody holds the lease and nobody is queued for it.
+    public Lease tryAcquire(String key) {
+        try {
+            if (client.llen(waitersKey(key)) > 0L) {
+                return null;
+            }
+            return set(key, UUID.randomUUID().toString());
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    public Lease acquire(String key) {
+        return acquire(key, waitTime);
+    }
+
+    // Waiters queue up in a list and only the head may take the lease, so
+    // the lease is handed out in arrival order. Releasing the lease signals
+    // the head directly; waiters watch for that signal instead of polling
+    // the lock, and re-check at least once a second in case a holder died
+    // and its lease simply expired.
+    public Lease acquire(String key, long timeout) {
+        Lease lease = tryAcquire(key);
+        if (lease != null) {
+            return lease;
+        }
+        String id = UUID.randomUUID().toString();
+        String waiters = waitersKey(key);
+        String heartbeat = heartbeatKey(key, id);
+        String signal = signalKey(key, id);
+        long deadline = System.currentTimeMillis() + timeout;
+        try {
+            client.psetex(heartbeat, HEARTBEAT, id);
+            client.rpush(waiters, id);
+            while (!Thread.currentThread().isInterrupted()) {
+                client.psetex(heartbeat, HEARTBEAT, id);
+                String head = client.lindex(waiters, 0L);
+                if (head == null) {
+                    client.rpush(waiters, id);
+                    continue;
+                }
+                if (head.equals(id)) {
+                    lease = set(key, id);
+                    if (lease != null) {
+                        return lease;
+                    }
+                }
+                else if (!client.exists(heartbeatKey(key, head))) {
+                    // The head gave up or died without dequeuing itself.
+                    client.lrem(waiters, 1L, head);
+                    continue;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0L) {
+                    return null;
+                }
+                await(signal, Math.min(remaining, 1000L));
+            }
+            return null;
+        }
+        catch (Exception e) {
+            return null;
+        }
+        finally {
+            try {
+                client.lrem(waiters, 1L, id);
+                client.del(heartbeat, signal);
+            }
+            catch (Exception e) {
+            }
+        }
+    }
+
+    public boolean renew(final Lease lease) {
+        boolean renewed = whileOwner(lease, new IRedisCheckAndSet<String>() {
+                @Override public String get(IRedisClient client, String key) {
+                    return token(client, key, lease);
+                }
+                @Override public IRedisClient set(IRedisClient multi, String key, String get) {
+                    if (get == null) {
+                        return multi;
+                    }
+                    try {
+                        multi.pexpire(key, leaseTime);
+                    }
+                    catch (Exception e) {
+                    }
+                    return multi;
+                }
+            });
+        if (!renewed) {
+            lost(lease);
+        }
+        return renewed;
+    }
+
+    // False once someone else has taken the lease since it was issued,
+    // i.e. it expired and its fence moved on.
+    public boolean current(IRedisClient client, Lease lease) throws Exception {
+        return String.valueOf(lease.fence).equals(client.get(fenceKey(lease.key)));
+    }
+
+    // Stops renewing every lease this lock handed out. The leases
+    // themselves are left to expire.
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    // Only the lock is watched. The waiter head is read without WATCH:
+    // waiters queue and dequeue all the time, and a release aborted by
+    // them would leave the lock held until it expires. A signal sent to a
+    // head that has since gone just expires; the new head re-checks the
+    // lock within a second anyway.
+    public boolean release(final Lease lease) {
+        lost(lease);
+        final String waiters = waitersKey(lease.key);
+        return whileOwner(lease, new IRedisCheckAndSet<String>() {
+                @Override public String get(IRedisClient client, String key) {
+                    if (token(client, key, lease) == null) {
+                        return null;
+                    }
+                    try {
+                        String head = client.lindex(waiters, 0L);
+                        return (head == null ? "" : head);
+                    }
+                    catch (Exception e) {
+                        throw new IllegalStateException("LINDEX " + waiters + " failed", e);
+                    }
+                }
+                @Override public IRedisClient set(IRedisClient multi, String key, String head) {
+                    if (head == null) {
+                        return multi;
+                    }
+                    try {
+                        multi.del(key);
+                        if (!head.isEmpty()) {
+                            String signal = signalKey(lease.key, head);
+                            multi.rpush(signal, lease.token);
+                            multi.pexpire(signal, leaseTime);
+                        }
+                    }
+                    catch (Exception e) {
+                    }
+                    return multi;
+                }
+            });
+    }
+
+    // The lease's token when it still holds the lock, otherwise null. A
+    // failed read throws, so that it is retried rather than taken for a
+    // lost lease.
+    private String token(IRedisClient client, String lock, Lease lease) {
+        String token;
+        try {
+            token = client.get(lock);
+        }
+        catch (Exception e) {
+            throw new IllegalStateException("GET " + lock + " failed", e);
+        }
+        return (lease.token.equals(token) ? token : null);
+    }
+
+    // Runs cs against the lock until it commits or the lock is no longer
+    // the lease's. Aborts and errors are retried for up to leaseTime, by
+    // which point the lock has expired on its own.
+    private boolean whileOwner(Lease lease, IRedisCheckAndSet<String> cs) {
+        String lock = lockKey(lease.key);
+        long deadline = System.currentTimeMillis() + leaseTime;
+        while (true) {
+            RedisCheckAndSetResult<String> result = cas.tryCheckAndSet(cs, lock);
+            switch (result.status()) {
+            case COMMITTED:
+                return true;
+            case PRECONDITION_FAILED:
+                return false;
+            default:
+                break;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0L) {
+                return false;
+            }
+            try {
+                Thread.sleep(Math.min(remaining, pollInterval));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    private Lease set(String key, String token) throws Exception {
+        String reply = client.set(lockKey(key), token, "nx", "px", String.valueOf(leaseTime));
+        if (!"OK".equals(reply)) {
+            return null;
+        }
+        final Lease lease = new Lease(key, token, client.incr(fenceKey(key)));
+        long period = Math.max(1L, leaseTime / 3L);
+        final Runnable renewal = new Runnable() {
+                @Override public void run() {
+                    try {
+                        renew(lease);
+                    }
+                    finally {
+                        lease.renewing.set(false);
+                    }
+                }
+            };
+        lease.renewal = scheduler.scheduleAtFixedRate(new Runnable() {
+                @Override public void run() {
+                    // Skip a beat rather than pile up behind a slow renewal.
+                    if (lease.held && lease.renewing.compareAndSet(false, true)) {
+                        try {
+                            executor.execute(renewal);
+                        }
+                        catch (Exception e) {
+                            lease.renewing.set(false);
+                        }
+                    }
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+        return lease;
+    }
+
+    private void lost(Lease lease) {
+        lease.held = false;
+        if (lease.renewal != null) {
+            lease.renewal.cancel(false);
+        }
+    }
+
+    // Looks at the waiter's own signal list every pollInterval, which is
+    // one LLEN on a key nobody else reads, rather than racing the other
+    // waiters for the lock.
+    private void await(String signal, long timeout) {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (true) {
+            try {
+                if (client.llen(signal) > 0L) {
+                    client.del(signal);
+                    return;
+                }
+            }
+            catch (Exception e) {
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0L) {
+                return;
+            }
+            try {
+                Thread.sleep(Math.min(remaining, pollInterval));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+}
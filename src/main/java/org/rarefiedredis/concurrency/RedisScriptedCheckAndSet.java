@@ -0,0 +1,41 @@
+package org.rarefiedredis.concurrency;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class RedisScriptedCheckAndSet {
+
+    private IRedisScripter scripter;
+    private AtomicLong evalshas = new AtomicLong();
+    private AtomicLong evals = new AtomicLong();
+
+    public RedisScriptedCheckAndSet(IRedisScripter scripter) {
+        this.scripter = scripter;
+    }
+
+    // The check and the set run atomically on the server, so there is
+    // nothing to watch and nothing to abort. EVALSHA is tried first; the
+    // full script is only sent when the server does not have it cached.
+    public Object checkAndSet(RedisScript script, List<String> keys, List<String> args) throws Exception {
+        try {
+            evalshas.incrementAndGet();
+            return scripter.evalsha(script.sha1(), keys, args);
+        }
+        catch (Exception e) {
+            if (e.getMessage() == null || !e.getMessage().contains("NOSCRIPT")) {
+                throw e;
+            }
+        }
+        evals.incrementAndGet();
+        return scripter.eval(script.source(), keys, args);
+    }
+
+    public long evalshas() {
+        return evalshas.get();
+    }
+
+    public long evals() {
+        return evals.get();
+    }
+
+}
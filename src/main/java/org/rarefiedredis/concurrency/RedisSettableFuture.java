@@ -0,0 +1,97 @@
+package org.rarefiedredis.concurrency;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// A future completed by whoever holds it rather than by a task, for
+// results that arrive in bulk such as the replies of one EXEC.
+public final class RedisSettableFuture<V> implements Future<V> {
+
+    private static final int PENDING = 0;
+    private static final int SET = 1;
+    private static final int FAILED = 2;
+    private static final int CANCELLED = 3;
+    // Claimed by a set or fail that is still writing its result.
+    private static final int COMPLETING = 4;
+
+    private final AtomicInteger state;
+    private final CountDownLatch done;
+    private volatile V value;
+    private volatile Throwable error;
+
+    public RedisSettableFuture() {
+        this.state = new AtomicInteger(PENDING);
+        this.done = new CountDownLatch(1);
+    }
+
+    // Only the first of set, fail and cancel wins; the result is written
+    // after the claim, so a later one cannot overwrite it.
+    public boolean set(V value) {
+        if (!state.compareAndSet(PENDING, COMPLETING)) {
+            return false;
+        }
+        this.value = value;
+        publish(SET);
+        return true;
+    }
+
+    public boolean fail(Throwable error) {
+        if (!state.compareAndSet(PENDING, COMPLETING)) {
+            return false;
+        }
+        this.error = error;
+        publish(FAILED);
+        return true;
+    }
+
+    private void publish(int to) {
+        state.set(to);
+        done.countDown();
+    }
+
+    @Override public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!state.compareAndSet(PENDING, CANCELLED)) {
+            return false;
+        }
+        done.countDown();
+        return true;
+    }
+
+    @Override public boolean isCancelled() {
+        return state.get() == CANCELLED;
+    }
+
+    @Override public boolean isDone() {
+        int s = state.get();
+        return s != PENDING && s != COMPLETING;
+    }
+
+    @Override public V get() throws InterruptedException, ExecutionException {
+        done.await();
+        return result();
+    }
+
+    @Override public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!done.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return result();
+    }
+
+    private V result() throws ExecutionException {
+        switch (state.get()) {
+        case CANCELLED:
+            throw new CancellationException();
+        case FAILED:
+            throw new ExecutionException(error);
+        default:
+            return value;
+        }
+    }
+
+}
@@ -0,0 +1,14 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.IRedisClient;
+
+import java.util.List;
+import java.util.Collection;
+
+public interface IRedisReliableBatchDeleter<T> extends IRedisReliableDeleter<T> {
+
+    List<T> verify(IRedisClient client, String key, Collection<T> elements);
+
+    IRedisClient multi(IRedisClient multi, String key, List<T> elements);
+
+}
@@ -0,0 +1,13 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.IRedisClient;
+
+import java.util.List;
+
+public interface IRedisReliableBatchMover<T> extends IRedisReliableMover<T> {
+
+    List<T> verify(IRedisClient client, String source, String dest, int maxCount);
+
+    IRedisClient multi(IRedisClient multi, String source, String dest, List<T> get);
+
+}
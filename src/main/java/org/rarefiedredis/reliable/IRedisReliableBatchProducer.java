@@ -0,0 +1,11 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.IRedisClient;
+
+import java.util.List;
+
+public interface IRedisReliableBatchProducer<T> extends IRedisReliableProducer<T> {
+
+    IRedisClient multi(IRedisClient multi, String key, List<T> productions);
+
+}
@@ -0,0 +1,8 @@
+package org.rarefiedredis.reliable;
+
+public interface IRedisReliableHandler<T> {
+
+    // Returning acks the element; throwing fails it back onto the queue.
+    void handle(T element) throws Exception;
+
+}
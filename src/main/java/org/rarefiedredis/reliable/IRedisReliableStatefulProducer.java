@@ -0,0 +1,15 @@
+package org.rarefiedredis.reliable;
+
+import java.util.List;
+
+// A producer whose multi depends on state kept across produce calls. The
+// multi runs again on every retry, so begin is called at the start of each
+// attempt and the state is only advanced from the replies of the EXEC that
+// actually committed.
+public interface IRedisReliableStatefulProducer<T> extends IRedisReliableProducer<T> {
+
+    void begin(String key);
+
+    void committed(String key, List<Object> replies);
+
+}
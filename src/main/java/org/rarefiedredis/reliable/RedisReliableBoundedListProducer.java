@@ -2,15 +2,42 @@ package org.rarefiedredis.reliable;
 
 import org.rarefiedredis.redis.IRedisClient;
 
-import java.util.Map;
-import java.util.Collection;
+import java.util.List;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
-public final class RedisReliableBoundedListProducer implements IRedisReliableProducer<String> {
+public final class RedisReliableBoundedListProducer implements IRedisReliableStatefulProducer<String> {
 
     private long bound;
+    private long slack;
+    private long sampleEvery;
+    private IRedisClient sampler;
+    private ConcurrentMap<String, AtomicLong> untrimmed;
+    // Pushes queued by the current attempt since it last trimmed, and
+    // whether it has trimmed at all.
+    private ThreadLocal<long[]> attempt = new ThreadLocal<long[]>() {
+        @Override protected long[] initialValue() {
+            return new long[2];
+        }
+    };
 
     public RedisReliableBoundedListProducer(long bound) {
+        this(bound, 0L, null);
+    }
+
+    // Lets the list grow to bound + slack before trimming it back to bound.
+    // The list is trimmed once slack elements have been pushed through this
+    // producer since its last committed trim, or sooner when the sampler,
+    // if any, reads a length past bound + slack; it is sampled every
+    // slack / 8 pushes.
+    public RedisReliableBoundedListProducer(long bound, long slack, IRedisClient sampler) {
         this.bound = bound;
+        this.slack = Math.max(0L, slack);
+        this.sampleEvery = Math.max(1L, this.slack / 8L);
+        this.sampler = sampler;
+        this.untrimmed = new ConcurrentHashMap<String, AtomicLong>();
     }
 
     @Override public String type() {
@@ -20,11 +47,87 @@ public final class RedisReliableBoundedListProducer implements IRedisReliablePro
     @Override public IRedisClient multi(IRedisClient multi, String key, String production) {
         try {
             multi.lpush(key, production);
-            multi.ltrim(key, -bound, -1L);
+            if (trim(key)) {
+                multi.ltrim(key, -bound, -1L);
+            }
         }
         catch (Exception e) {
         }
         return multi;
     }
 
-}
\ No newline at end of file
+    @Override public void begin(String key) {
+        long[] state = attempt.get();
+        state[0] = 0L;
+        state[1] = 0L;
+    }
+
+    // Counts the pushes that made it since the last trim that did. An LTRIM
+    // replies OK where an LPUSH replies with the length.
+    @Override public void committed(String key, List<Object> replies) {
+        if (slack == 0L || replies == null) {
+            return;
+        }
+        long pushed = 0L;
+        boolean trimmed = false;
+        for (Object reply : replies) {
+            if ("OK".equals(reply)) {
+                pushed = 0L;
+                trimmed = true;
+            }
+            else if (reply instanceof Long) {
+                ++pushed;
+            }
+        }
+        if (trimmed) {
+            pushes(key).set(pushed);
+        }
+        else {
+            pushes(key).addAndGet(pushed);
+        }
+    }
+
+    private AtomicLong pushes(String key) {
+        AtomicLong pushes = untrimmed.get(key);
+        if (pushes == null) {
+            if (untrimmed.size() >= 4096) {
+                // Forgetting a key only delays its next trim.
+                Iterator<String> keys = untrimmed.keySet().iterator();
+                if (keys.hasNext()) {
+                    keys.next();
+                    keys.remove();
+                }
+            }
+            untrimmed.putIfAbsent(key, new AtomicLong());
+            pushes = untrimmed.get(key);
+        }
+        return pushes;
+    }
+
+    // Only the attempt's own state changes here, so an attempt that aborts
+    // is retried with the same decisions.
+    private boolean trim(String key) {
+        if (slack == 0L) {
+            return true;
+        }
+        long[] state = attempt.get();
+        long n = (state[1] == 0L ? pushes(key).get() : 0L) + (++state[0]);
+        boolean trim = (n >= slack);
+        if (!trim && sampler != null && n % sampleEvery == 0L) {
+            // Other producers push too; their pushes only show up in the
+            // length. The sample is read outside the transaction, so the
+            // push being queued is not in it yet.
+            try {
+                trim = (sampler.llen(key) + 1L > bound + slack);
+            }
+            catch (Exception e) {
+            }
+        }
+        if (trim) {
+            state[0] = 0L;
+            state[1] = 1L;
+        }
+        return trim;
+    }
+
+}
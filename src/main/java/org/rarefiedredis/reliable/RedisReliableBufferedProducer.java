@@ -0,0 +1,186 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.WrongTypeException;
+import org.rarefiedredis.concurrency.RedisCheckAndSetResult;
+import org.rarefiedredis.concurrency.RedisSettableFuture;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Collects productions from any number of threads and produces them per
+// key in one transaction, once batchSize are waiting or the oldest has
+// waited linger milliseconds, at least 1. Each production gets a future
+// completed from the first EXEC reply of the commands it queued.
+public final class RedisReliableBufferedProducer<T> {
+
+    private static final class Pending<T> {
+        private final String key;
+        private final T production;
+        private final RedisSettableFuture<Object> future;
+
+        public Pending(String key, T production) {
+            this.key = key;
+            this.production = production;
+            this.future = new RedisSettableFuture<Object>();
+        }
+    }
+
+    private final RedisReliableProducer<T> producer;
+    private final int batchSize;
+    private final long linger;
+    private final ConcurrentLinkedQueue<Pending<T>> queue;
+    private final AtomicInteger queued;
+    private final AtomicLong flushes;
+    private final AtomicLong produced;
+    private final Thread flusher;
+    private volatile boolean running;
+
+    public RedisReliableBufferedProducer(RedisReliableProducer<T> producer) {
+        this(producer, 100, 5L);
+    }
+
+    public RedisReliableBufferedProducer(RedisReliableProducer<T> producer, int batchSize, long linger) {
+        this.producer = producer;
+        this.batchSize = Math.max(1, batchSize);
+        this.linger = Math.max(1L, linger);
+        this.queue = new ConcurrentLinkedQueue<Pending<T>>();
+        this.queued = new AtomicInteger();
+        this.flushes = new AtomicLong();
+        this.produced = new AtomicLong();
+        this.running = true;
+        this.flusher = new Thread(new Runnable() {
+                @Override public void run() {
+                    linger();
+                }
+            }, "rarefied-redis-buffered-producer");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public Future<Object> produce(String key, T production) {
+        Pending<T> pending = new Pending<T>(key, production);
+        if (!running) {
+            pending.future.fail(new IllegalStateException("producer closed"));
+            return pending.future;
+        }
+        queue.offer(pending);
+        if (queued.incrementAndGet() >= batchSize) {
+            LockSupport.unpark(flusher);
+        }
+        if (!running) {
+            // Raced with close; nobody else will flush this one.
+            flush();
+        }
+        return pending.future;
+    }
+
+    public List<Future<Object>> produceAll(String key, Collection<T> productions) {
+        List<Future<Object>> futures = new ArrayList<Future<Object>>(productions.size());
+        for (T production : productions) {
+            futures.add(produce(key, production));
+        }
+        return futures;
+    }
+
+    public int queued() {
+        return queued.get();
+    }
+
+    public long flushes() {
+        return flushes.get();
+    }
+
+    public long produced() {
+        return produced.get();
+    }
+
+    // Stops lingering and produces whatever is still queued.
+    public void close() {
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private void linger() {
+        long lingerNanos = TimeUnit.MILLISECONDS.toNanos(linger);
+        while (running) {
+            if (queued.get() < batchSize) {
+                LockSupport.parkNanos(this, lingerNanos);
+            }
+            flush();
+        }
+    }
+
+    public synchronized void flush() {
+        Map<String, List<Pending<T>>> keys = new LinkedHashMap<String, List<Pending<T>>>();
+        Pending<T> pending;
+        while ((pending = queue.poll()) != null) {
+            queued.decrementAndGet();
+            List<Pending<T>> batch = keys.get(pending.key);
+            if (batch == null) {
+                batch = new ArrayList<Pending<T>>();
+                keys.put(pending.key, batch);
+            }
+            batch.add(pending);
+        }
+        for (Map.Entry<String, List<Pending<T>>> entry : keys.entrySet()) {
+            List<Pending<T>> batch = entry.getValue();
+            for (int i = 0; i < batch.size(); i += batchSize) {
+                produce(entry.getKey(), batch.subList(i, Math.min(i + batchSize, batch.size())));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void produce(String key, List<Pending<T>> batch) {
+        Object[] productions = new Object[batch.size()];
+        for (int i = 0; i < productions.length; ++i) {
+            productions[i] = batch.get(i).production;
+        }
+        flushes.incrementAndGet();
+        RedisCheckAndSetResult<T[]> result;
+        List<List<Object>> replies = new ArrayList<List<Object>>(batch.size());
+        try {
+            result = producer.tryProduce(key, (T[])productions, replies);
+        }
+        catch (WrongTypeException e) {
+            fail(batch, e);
+            return;
+        }
+        catch (RuntimeException e) {
+            fail(batch, e);
+            return;
+        }
+        if (!result.committed()) {
+            fail(batch, (result.error() != null ? result.error() : new IllegalStateException("produce " + result.status().toString().toLowerCase())));
+            return;
+        }
+        produced.addAndGet(batch.size());
+        for (int i = 0; i < batch.size(); ++i) {
+            List<Object> own = replies.get(i);
+            batch.get(i).future.set(own.isEmpty() ? null : own.get(0));
+        }
+    }
+
+    private void fail(List<Pending<T>> batch, Exception e) {
+        for (Pending<T> pending : batch) {
+            pending.future.fail(e);
+        }
+    }
+
+}
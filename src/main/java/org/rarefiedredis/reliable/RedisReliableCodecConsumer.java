@@ -0,0 +1,43 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.WrongTypeException;
+import org.rarefiedredis.util.IRedisCodec;
+
+// Consumes typed values through a String consumer. Elements are encoded
+// again to find them for ack and fail, so the codec must encode a value
+// the same way every time.
+public final class RedisReliableCodecConsumer<T> {
+
+    private RedisReliableConsumer<String> consumer;
+    private IRedisCodec<T> codec;
+
+    public RedisReliableCodecConsumer(RedisReliableConsumer<String> consumer, IRedisCodec<T> codec) {
+        this.consumer = consumer;
+        this.codec = codec;
+    }
+
+    public IRedisCodec<T> codec() {
+        return codec;
+    }
+
+    public T consume(String key, String inprocesskey) throws WrongTypeException {
+        return decode(consumer.consume(key, inprocesskey));
+    }
+
+    public T consume(String key, String inprocesskey, T element) throws WrongTypeException {
+        return decode(consumer.consume(key, inprocesskey, (element == null ? null : codec.encode(element))));
+    }
+
+    public T ack(String key, String inprocesskey, T element) throws WrongTypeException {
+        return decode(consumer.ack(key, inprocesskey, codec.encode(element)));
+    }
+
+    public T fail(String key, String inprocesskey, T element) throws WrongTypeException {
+        return decode(consumer.fail(key, inprocesskey, codec.encode(element)));
+    }
+
+    private T decode(String encoded) {
+        return (encoded == null ? null : codec.decode(encoded));
+    }
+
+}
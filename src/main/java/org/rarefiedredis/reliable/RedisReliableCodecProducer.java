@@ -0,0 +1,46 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.WrongTypeException;
+import org.rarefiedredis.concurrency.RedisCheckAndSetResult;
+import org.rarefiedredis.util.IRedisCodec;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+// Produces typed values through a String producer, encoding each with a
+// codec.
+public final class RedisReliableCodecProducer<T> {
+
+    private RedisReliableProducer<String> producer;
+    private IRedisCodec<T> codec;
+
+    public RedisReliableCodecProducer(RedisReliableProducer<String> producer, IRedisCodec<T> codec) {
+        this.producer = producer;
+        this.codec = codec;
+    }
+
+    public IRedisCodec<T> codec() {
+        return codec;
+    }
+
+    public List<Object> produce(String key, T ... productions) throws WrongTypeException {
+        return producer.produce(key, encode(productions));
+    }
+
+    public RedisCheckAndSetResult<String[]> tryProduce(String key, T ... productions) throws WrongTypeException {
+        return producer.tryProduce(key, encode(productions));
+    }
+
+    public Future<List<Object>> produceAsync(String key, T ... productions) {
+        return producer.produceAsync(key, encode(productions));
+    }
+
+    private String[] encode(T[] productions) {
+        String[] encoded = new String[productions.length];
+        for (int i = 0; i < productions.length; ++i) {
+            encoded[i] = codec.encode(productions[i]);
+        }
+        return encoded;
+    }
+
+}
@@ -2,19 +2,73 @@ package org.rarefiedredis.reliable;
 
 import org.rarefiedredis.redis.IRedisClient;
 import org.rarefiedredis.redis.WrongTypeException;
+import org.rarefiedredis.concurrency.RedisCheckAndSet;
+import org.rarefiedredis.concurrency.RedisCheckAndSetResult;
+import org.rarefiedredis.concurrency.RedisExecutors;
+import org.rarefiedredis.util.RedisTypeCache;
+
+import java.util.Map;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public final class RedisReliableConsumer<T> {
 
+    private IRedisClient client;
     private RedisReliableMover mover;
     private IRedisReliableMover<T> imover;
     private RedisReliableDeleter deleter;
     private IRedisReliableDeleter<T> ideleter;
+    private ExecutorService executor;
+    private RedisReliableNotifier notifier;
+    private long pollInterval;
 
     public RedisReliableConsumer(IRedisClient client, IRedisReliableMover<T> imover, IRedisReliableDeleter<T> ideleter) {
+        this.client = client;
         this.mover = new RedisReliableMover(client);
         this.imover = imover;
         this.deleter = new RedisReliableDeleter(client);
         this.ideleter = ideleter;
+        this.executor = RedisExecutors.defaultExecutor();
+        this.pollInterval = 100L;
+    }
+
+    public RedisReliableConsumer(RedisCheckAndSet cas, IRedisReliableMover<T> imover, IRedisReliableDeleter<T> ideleter) {
+        this(cas, imover, ideleter, RedisExecutors.defaultExecutor());
+    }
+
+    public RedisReliableConsumer(RedisCheckAndSet cas, IRedisReliableMover<T> imover, IRedisReliableDeleter<T> ideleter, ExecutorService executor) {
+        this.client = cas.client();
+        this.mover = new RedisReliableMover(cas);
+        this.imover = imover;
+        this.deleter = new RedisReliableDeleter(cas);
+        this.ideleter = ideleter;
+        this.executor = executor;
+        this.pollInterval = 100L;
+    }
+
+    // Shares one type cache between the consumer's mover and deleter.
+    public RedisReliableConsumer<T> typeCache(RedisTypeCache typeCache) {
+        mover.typeCache(typeCache);
+        deleter.typeCache(typeCache);
+        return this;
+    }
+
+    // Lets blocking consumes wake on signals from producers in this JVM
+    // instead of waiting out the poll interval.
+    public RedisReliableConsumer<T> notifier(RedisReliableNotifier notifier) {
+        this.notifier = notifier;
+        return this;
+    }
+
+    // The longest a blocking consume goes without looking at the queue.
+    public RedisReliableConsumer<T> pollInterval(long pollInterval) {
+        this.pollInterval = Math.max(1L, pollInterval);
+        return this;
     }
 
     public T consume(final String key, final String inprocesskey) throws WrongTypeException {
@@ -25,12 +79,132 @@ public final class RedisReliableConsumer<T> {
         return mover.move(imover, key, inprocesskey, element);
     }
 
+    // Claims up to maxCount elements in one transaction when the mover can
+    // move many at once, else one transaction per element.
+    public List<T> consume(final String key, final String inprocesskey, final int maxCount) throws WrongTypeException {
+        if (imover instanceof IRedisReliableBatchMover) {
+            return mover.moveAll((IRedisReliableBatchMover<T>)imover, key, inprocesskey, maxCount);
+        }
+        List<T> consumed = new ArrayList<T>();
+        for (int i = 0; i < maxCount; ++i) {
+            T element = consume(key, inprocesskey);
+            if (element == null) {
+                break;
+            }
+            consumed.add(element);
+        }
+        return consumed;
+    }
+
+    // Waits up to timeout for an element, null when none arrived. The
+    // queue is retried whenever the notifier signals the key, and at least
+    // every pollInterval so that producers in other processes are seen.
+    // Each look is one unwatched EXISTS; the claiming transaction only runs
+    // once the queue has something in it.
+    public T consume(final String key, final String inprocesskey, final long timeout, final TimeUnit unit) throws WrongTypeException, InterruptedException {
+        long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+        while (true) {
+            long version = (notifier == null ? 0L : notifier.version(key));
+            if (ready(key)) {
+                T element = consume(key, inprocesskey);
+                if (element != null) {
+                    return element;
+                }
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0L) {
+                return null;
+            }
+            if (notifier == null) {
+                Thread.sleep(Math.min(remaining, pollInterval));
+            }
+            else {
+                notifier.await(key, version, Math.min(remaining, pollInterval));
+            }
+        }
+    }
+
+    // Whether key may hold something to claim. Redis drops emptied
+    // structures, so a missing key means an empty queue; a failed read
+    // leaves the answer to the transaction.
+    public boolean ready(final String key) {
+        try {
+            return client.exists(key);
+        }
+        catch (Exception e) {
+            return true;
+        }
+    }
+
     public T ack(final String key, final String inprocesskey, final T element) throws WrongTypeException {
         return deleter.delete(ideleter, inprocesskey, element);
     }
 
+    // The elements actually acked: in one transaction when the deleter can
+    // delete many at once, else one transaction per element.
+    public List<T> ack(final String key, final String inprocesskey, final Collection<T> elements) throws WrongTypeException {
+        if (ideleter instanceof IRedisReliableBatchDeleter) {
+            return deleter.deleteAll((IRedisReliableBatchDeleter<T>)ideleter, inprocesskey, elements);
+        }
+        List<T> acked = new ArrayList<T>();
+        for (T element : elements) {
+            if (ack(key, inprocesskey, element) != null) {
+                acked.add(element);
+            }
+        }
+        return acked;
+    }
+
     public T fail(final String key, final String inprocesskey, final T element) throws WrongTypeException {
-        return mover.move(imover, inprocesskey, key, element);
+        T failed = mover.move(imover, inprocesskey, key, element);
+        if (failed != null && notifier != null) {
+            notifier.signal(key);
+        }
+        return failed;
+    }
+
+    public RedisCheckAndSetResult<T> tryConsume(final String key, final String inprocesskey) throws WrongTypeException {
+        return tryConsume(key, inprocesskey, null);
+    }
+
+    public RedisCheckAndSetResult<T> tryConsume(final String key, final String inprocesskey, final T element) throws WrongTypeException {
+        return mover.tryMove(imover, key, inprocesskey, element);
+    }
+
+    public RedisCheckAndSetResult<T> tryAck(final String key, final String inprocesskey, final T element) throws WrongTypeException {
+        return deleter.tryDelete(ideleter, inprocesskey, element);
+    }
+
+    public RedisCheckAndSetResult<T> tryFail(final String key, final String inprocesskey, final T element) throws WrongTypeException {
+        return mover.tryMove(imover, inprocesskey, key, element);
+    }
+
+    public Future<T> consumeAsync(final String key, final String inprocesskey) {
+        return consumeAsync(key, inprocesskey, null);
+    }
+
+    public Future<T> consumeAsync(final String key, final String inprocesskey, final T element) {
+        return executor.submit(new Callable<T>() {
+                @Override public T call() throws WrongTypeException {
+                    return consume(key, inprocesskey, element);
+                }
+            });
+    }
+
+    public Future<T> ackAsync(final String key, final String inprocesskey, final T element) {
+        return executor.submit(new Callable<T>() {
+                @Override public T call() throws WrongTypeException {
+                    return ack(key, inprocesskey, element);
+                }
+            });
+    }
+
+    public Future<T> failAsync(final String key, final String inprocesskey, final T element) {
+        return executor.submit(new Callable<T>() {
+                @Override public T call() throws WrongTypeException {
+                    return fail(key, inprocesskey, element);
+                }
+            });
     }
 
     public static RedisReliableConsumer<String> StringConsumer(IRedisClient client) {
@@ -45,4 +219,8 @@ public final class RedisReliableConsumer<T> {
         return new RedisReliableConsumer<String>(client, new RedisReliableSetMover(), new RedisReliableSetDeleter());
     }
 
+    public static RedisReliableConsumer<Map.Entry<String, String>> HashConsumer(IRedisClient client) {
+        return new RedisReliableConsumer<Map.Entry<String, String>>(client, new RedisReliableHashMover(), new RedisReliableHashDeleter());
+    }
+
 }
\ No newline at end of file
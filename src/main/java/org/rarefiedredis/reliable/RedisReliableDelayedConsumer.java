@@ -0,0 +1,79 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.IRedisClient;
+import org.rarefiedredis.redis.WrongTypeException;
+import org.rarefiedredis.redis.IRedisSortedSet.ZsetPair;
+import org.rarefiedredis.concurrency.RedisCheckAndSet;
+import org.rarefiedredis.concurrency.RedisCheckAndSetRetryPolicy;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+
+// Claims due elements of a RedisReliableDelayedProducer's sorted set in
+// batches: one ZRANGEBYSCORE, then ZREM and ZADD into the in process
+// sorted set in one transaction. Due times are compared against this
+// JVM's clock.
+public final class RedisReliableDelayedConsumer {
+
+    private IRedisClient client;
+    private RedisReliableMover mover;
+    private RedisReliableDeleter deleter;
+    private int batchSize;
+
+    public RedisReliableDelayedConsumer(IRedisClient client) {
+        this(client, new RedisCheckAndSet(client, RedisCheckAndSetRetryPolicy.DEFAULT), 100);
+    }
+
+    public RedisReliableDelayedConsumer(IRedisClient client, RedisCheckAndSet cas, int batchSize) {
+        this.client = client;
+        this.mover = new RedisReliableMover(cas);
+        this.deleter = new RedisReliableDeleter(cas);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public List<String> consume(String key, String inprocesskey) throws WrongTypeException {
+        return consume(key, inprocesskey, batchSize);
+    }
+
+    // Up to max due elements, or an empty list when none are due.
+    public List<String> consume(String key, String inprocesskey, int max) throws WrongTypeException {
+        List<ZsetPair> claimed = mover.move(new RedisReliableDelayedMover(max), key, inprocesskey);
+        if (claimed == null) {
+            return Collections.<String>emptyList();
+        }
+        List<String> elements = new ArrayList<String>(claimed.size());
+        for (ZsetPair pair : claimed) {
+            elements.add(pair.member);
+        }
+        return elements;
+    }
+
+    public String ack(String key, String inprocesskey, String element) throws WrongTypeException {
+        return deleter.delete(new RedisReliableSortedSetDeleter(), inprocesskey, element);
+    }
+
+    // Puts the element back with its original due time, so it is due again
+    // straight away.
+    public String fail(String key, String inprocesskey, String element) throws WrongTypeException {
+        return mover.move(new RedisReliableSortedSetMover(), inprocesskey, key, element);
+    }
+
+    // When the earliest element is due, in epoch milliseconds, or null when
+    // there is nothing scheduled.
+    public Long nextDue(String key) {
+        try {
+            Set<ZsetPair> first = client.zrange(key, 0L, 0L, "withscores");
+            if (first == null || first.isEmpty()) {
+                return null;
+            }
+            Double score = first.iterator().next().score;
+            return (score == null ? null : score.longValue());
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.IRedisClient;
+import org.rarefiedredis.redis.IRedisSortedSet.ZsetPair;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Set;
+
+// Claims every member of a sorted set whose score, a due time in epoch
+// milliseconds, has passed, up to max at a time. The members keep their
+// scores in the destination sorted set.
+public final class RedisReliableDelayedMover implements IRedisReliableMover<List<ZsetPair>> {
+
+    private long max;
+
+    public RedisReliableDelayedMover(long max) {
+        this.max = Math.max(1L, max);
+    }
+
+    @Override public String type() {
+        return "zset";
+    }
+
+    @Override public List<ZsetPair> verify(IRedisClient client, String source, String dest, List<ZsetPair> element) {
+        try {
+            Set<ZsetPair> due = client.zrangebyscore(source, "-inf", String.valueOf(System.currentTimeMillis()), "withscores", "limit", "0", String.valueOf(max));
+            if (due == null || due.isEmpty()) {
+                return null;
+            }
+            return new ArrayList<ZsetPair>(due);
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override public IRedisClient multi(IRedisClient multi, String source, String dest, List<ZsetPair> get) {
+        String[] members = new String[get.size() - 1];
+        for (int i = 1; i < get.size(); ++i) {
+            members[i - 1] = get.get(i).member;
+        }
+        try {
+            multi.zrem(source, get.get(0).member, members);
+            multi.zadd(dest, get.get(0), get.subList(1, get.size()).toArray(new ZsetPair[0]));
+        }
+        catch (Exception e) {
+        }
+        return multi;
+    }
+
+}
@@ -0,0 +1,36 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.IRedisClient;
+import org.rarefiedredis.redis.WrongTypeException;
+import org.rarefiedredis.redis.IRedisSortedSet.ZsetPair;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Schedules elements on a sorted set scored by due time, in epoch
+// milliseconds, for RedisReliableDelayedConsumer to claim.
+public final class RedisReliableDelayedProducer {
+
+    private RedisReliableProducer<ZsetPair> producer;
+
+    public RedisReliableDelayedProducer(IRedisClient client) {
+        this(new RedisReliableProducer<ZsetPair>(client, new RedisReliableSortedSetProducer()).batchSize(1000));
+    }
+
+    public RedisReliableDelayedProducer(RedisReliableProducer<ZsetPair> producer) {
+        this.producer = producer;
+    }
+
+    public List<Object> produceAt(String key, long due, String ... elements) throws WrongTypeException {
+        ZsetPair[] pairs = new ZsetPair[elements.length];
+        for (int i = 0; i < elements.length; ++i) {
+            pairs[i] = new ZsetPair(elements[i], (double)due);
+        }
+        return producer.produce(key, pairs);
+    }
+
+    public List<Object> produceIn(String key, long delay, TimeUnit unit, String ... elements) throws WrongTypeException {
+        return produceAt(key, System.currentTimeMillis() + unit.toMillis(delay), elements);
+    }
+
+}
@@ -3,16 +3,36 @@ package org.rarefiedredis.reliable;
 import org.rarefiedredis.redis.IRedisClient;
 import org.rarefiedredis.redis.WrongTypeException;
 import org.rarefiedredis.concurrency.RedisCheckAndSet;
+import org.rarefiedredis.concurrency.RedisCheckAndSetResult;
+import org.rarefiedredis.concurrency.RedisCheckAndSetRetryPolicy;
 import org.rarefiedredis.concurrency.IRedisCheckAndSet;
+import org.rarefiedredis.util.RedisTypeCache;
 
 import java.util.List;
+import java.util.Collection;
+import java.util.Collections;
 
 public final class RedisReliableDeleter {
 
     private RedisCheckAndSet cas;
+    private RedisTypeCache typeCache;
 
     public RedisReliableDeleter(IRedisClient client) {
-        cas = new RedisCheckAndSet(client);
+        this(new RedisCheckAndSet(client, RedisCheckAndSetRetryPolicy.DEFAULT));
+    }
+
+    public RedisReliableDeleter(RedisCheckAndSet cas) {
+        this.cas = cas;
+    }
+
+    // Skips the TYPE round trip for keys whose type is cached.
+    public RedisReliableDeleter typeCache(RedisTypeCache typeCache) {
+        this.typeCache = typeCache;
+        return this;
+    }
+
+    public RedisTypeCache typeCache() {
+        return typeCache;
     }
 
     private final class RedisReliableDeleterCheckAndSet<T> implements IRedisCheckAndSet<T> {
@@ -30,14 +50,18 @@ public final class RedisReliableDeleter {
         }
 
         @Override public T get(IRedisClient client, String key) {
+            wrongType = false;
             String type = deleter.type();
             String t;
             if (type != null) {
                 try {
-                    t = client.type(key);
+                    t = (typeCache == null ? client.type(key) : typeCache.type(client, key));
+                }
+                catch (RuntimeException e) {
+                    throw e;
                 }
                 catch (Exception e) {
-                    return null;
+                    throw new IllegalStateException("TYPE " + key + " failed", e);
                 }
                 if (t.equals("none")) {
                     return null;
@@ -51,6 +75,7 @@ public final class RedisReliableDeleter {
         }
 
         @Override public IRedisClient set(IRedisClient multi, String key, T get) {
+            deleted = null;
             if (get == null || !get.equals(element)) {
                 return multi;
             }
@@ -60,13 +85,98 @@ public final class RedisReliableDeleter {
 
     }
 
+    private final class RedisReliableBatchDeleterCheckAndSet<T> implements IRedisCheckAndSet<List<T>> {
+
+        public boolean wrongType;
+        private Collection<T> elements;
+        private IRedisReliableBatchDeleter<T> deleter;
+
+        public RedisReliableBatchDeleterCheckAndSet(IRedisReliableBatchDeleter<T> deleter, Collection<T> elements) {
+            this.deleter = deleter;
+            this.elements = elements;
+            this.wrongType = false;
+        }
+
+        @Override public List<T> get(IRedisClient client, String key) {
+            wrongType = false;
+            String type = deleter.type();
+            String t;
+            if (type != null) {
+                try {
+                    t = (typeCache == null ? client.type(key) : typeCache.type(client, key));
+                }
+                catch (RuntimeException e) {
+                    throw e;
+                }
+                catch (Exception e) {
+                    throw new IllegalStateException("TYPE " + key + " failed", e);
+                }
+                if (t.equals("none")) {
+                    return null;
+                }
+                if (!t.equals(type)) {
+                    wrongType = true;
+                    return null;
+                }
+            }
+            return deleter.verify(client, key, elements);
+        }
+
+        @Override public IRedisClient set(IRedisClient multi, String key, List<T> get) {
+            if (get == null || get.isEmpty()) {
+                return multi;
+            }
+            return deleter.multi(multi, key, get);
+        }
+
+    }
+
     public <T> T delete(IRedisReliableDeleter<T> deleter, String key, T element) throws WrongTypeException {
+        RedisCheckAndSetResult<T> result = tryDelete(deleter, key, element);
+        return (result.committed() ? result.value() : null);
+    }
+
+    public <T> RedisCheckAndSetResult<T> tryDelete(IRedisReliableDeleter<T> deleter, String key, T element) throws WrongTypeException {
         RedisReliableDeleterCheckAndSet<T> cs = new RedisReliableDeleterCheckAndSet<T>(deleter, element);
-        List<Object> replies = cas.checkAndSet(cs, key);
+        RedisCheckAndSetResult<T> result = cas.tryCheckAndSet(cs, key);
+        invalidate(key, result, cs.wrongType);
         if (cs.wrongType) {
             throw new WrongTypeException();
         }
-        return (replies == null ? null : cs.deleted);
+        return result;
+    }
+
+    // The elements that were found and deleted, in one transaction.
+    public <T> List<T> deleteAll(IRedisReliableBatchDeleter<T> deleter, String key, Collection<T> elements) throws WrongTypeException {
+        RedisCheckAndSetResult<List<T>> result = tryDeleteAll(deleter, key, elements);
+        return (result.committed() ? result.value() : Collections.<T>emptyList());
+    }
+
+    public <T> RedisCheckAndSetResult<List<T>> tryDeleteAll(IRedisReliableBatchDeleter<T> deleter, String key, Collection<T> elements) throws WrongTypeException {
+        RedisReliableBatchDeleterCheckAndSet<T> cs = new RedisReliableBatchDeleterCheckAndSet<T>(deleter, elements);
+        RedisCheckAndSetResult<List<T>> result = cas.tryCheckAndSet(cs, key);
+        invalidate(key, result, cs.wrongType);
+        if (cs.wrongType) {
+            throw new WrongTypeException();
+        }
+        return result;
+    }
+
+    // Only a wrong type or a failure says the cached type may be stale; an
+    // empty queue or an aborted attempt does not.
+    private void invalidate(String key, RedisCheckAndSetResult<?> result, boolean wrongType) {
+        if (typeCache == null) {
+            return;
+        }
+        boolean failed = (result.status() == RedisCheckAndSetResult.Status.ERROR);
+        if (result.replies() != null) {
+            for (Object reply : result.replies()) {
+                failed = failed || (reply instanceof Exception);
+            }
+        }
+        if (wrongType || failed) {
+            typeCache.invalidate(key);
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,37 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.IRedisClient;
+
+import java.util.Map;
+
+public final class RedisReliableHashDeleter implements IRedisReliableDeleter<Map.Entry<String, String>> {
+
+    @Override public String type() {
+        return "hash";
+    }
+
+    @Override public Map.Entry<String, String> verify(IRedisClient client, String key, Map.Entry<String, String> element) {
+        try {
+            String value = client.hget(key, element.getKey());
+            if (value == null || (element.getValue() != null && !element.getValue().equals(value))) {
+                return null;
+            }
+            return element;
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override public IRedisClient multi(IRedisClient multi, String key, Map.Entry<String, String> element) {
+        try {
+            multi.hdel(key, element.getKey());
+        }
+        catch (Exception e) {
+        }
+        return multi;
+    }
+}
@@ -0,0 +1,56 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.IRedisClient;
+
+import java.util.Map;
+import java.util.AbstractMap;
+import java.util.Set;
+
+// Moves one field, with its value, between hashes. Without a field to
+// move it takes any field of the source. When the element carries a
+// value, the field only moves while it still holds that value.
+public final class RedisReliableHashMover implements IRedisReliableMover<Map.Entry<String, String>> {
+
+    @Override public String type() {
+        return "hash";
+    }
+
+    @Override public Map.Entry<String, String> verify(IRedisClient client, String source, String dest, Map.Entry<String, String> element) {
+        try {
+            String field;
+            if (element == null) {
+                Set<String> fields = client.hkeys(source);
+                if (fields == null || fields.isEmpty()) {
+                    return null;
+                }
+                field = fields.iterator().next();
+            }
+            else {
+                field = element.getKey();
+            }
+            String value = client.hget(source, field);
+            if (value == null || (element != null && element.getValue() != null && !element.getValue().equals(value))) {
+                return null;
+            }
+            return new AbstractMap.SimpleImmutableEntry<String, String>(field, value);
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override public IRedisClient multi(IRedisClient multi, String source, String dest, Map.Entry<String, String> get) {
+        try {
+            multi.hdel(source, get.getKey());
+            multi.hset(dest, get.getKey(), get.getValue());
+        }
+        catch (Exception e) {
+            return null;
+        }
+        return multi;
+    }
+
+}
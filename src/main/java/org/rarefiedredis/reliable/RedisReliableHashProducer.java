@@ -0,0 +1,40 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.IRedisClient;
+
+import java.util.List;
+import java.util.Map;
+
+public final class RedisReliableHashProducer implements IRedisReliableBatchProducer<Map.Entry<String, String>> {
+
+    @Override public String type() {
+        return "hash";
+    }
+
+    @Override public IRedisClient multi(IRedisClient multi, String key, Map.Entry<String, String> production) {
+        try {
+            multi.hset(key, production.getKey(), production.getValue());
+        }
+        catch (Exception e) {
+        }
+        return multi;
+    }
+
+    @Override public IRedisClient multi(IRedisClient multi, String key, List<Map.Entry<String, String>> productions) {
+        if (productions.isEmpty()) {
+            return multi;
+        }
+        String[] fvs = new String[2 * (productions.size() - 1)];
+        for (int i = 1; i < productions.size(); ++i) {
+            fvs[2 * (i - 1)] = productions.get(i).getKey();
+            fvs[2 * (i - 1) + 1] = productions.get(i).getValue();
+        }
+        try {
+            multi.hmset(key, productions.get(0).getKey(), productions.get(0).getValue(), fvs);
+        }
+        catch (Exception e) {
+        }
+        return multi;
+    }
+
+}
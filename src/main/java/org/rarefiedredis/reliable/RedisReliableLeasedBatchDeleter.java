@@ -0,0 +1,33 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.IRedisClient;
+
+import java.util.List;
+import java.util.Collection;
+
+// A RedisReliableLeasedDeleter over a batch deleter; a batch delete drops
+// every deleted element's lease in the same transaction.
+public final class RedisReliableLeasedBatchDeleter extends RedisReliableLeasedDeleter implements IRedisReliableBatchDeleter<String> {
+
+    private IRedisReliableBatchDeleter<String> deleter;
+
+    public RedisReliableLeasedBatchDeleter(IRedisReliableBatchDeleter<String> deleter) {
+        super(deleter);
+        this.deleter = deleter;
+    }
+
+    @Override public List<String> verify(IRedisClient client, String key, Collection<String> elements) {
+        return deleter.verify(client, key, elements);
+    }
+
+    @Override public IRedisClient multi(IRedisClient multi, String key, List<String> elements) {
+        multi = deleter.multi(multi, key, elements);
+        try {
+            multi.zrem(RedisReliableLeasedMover.leases(key), elements.get(0), elements.subList(1, elements.size()).toArray(new String[0]));
+        }
+        catch (Exception e) {
+        }
+        return multi;
+    }
+
+}
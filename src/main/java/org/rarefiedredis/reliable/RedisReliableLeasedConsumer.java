@@ -0,0 +1,209 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.IRedisClient;
+import org.rarefiedredis.redis.WrongTypeException;
+import org.rarefiedredis.redis.IRedisSortedSet.ZsetPair;
+import org.rarefiedredis.concurrency.RedisCheckAndSet;
+import org.rarefiedredis.concurrency.IRedisCheckAndSet;
+import org.rarefiedredis.concurrency.IRedisMultiCheckAndSet;
+import org.rarefiedredis.concurrency.RedisCheckAndSetRetryPolicy;
+import org.rarefiedredis.concurrency.RedisCheckAndSetResult;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// A consumer whose claims carry a visibility timeout. Every consume also
+// scores the element in the in process key's lease sorted set with the
+// time its lease runs out, in the same transaction; acks and fails drop
+// the lease. Elements whose lease has run out are the ones a
+// RedisReliableReaper hands back through reap. Handlers that need longer
+// than the timeout extend their lease.
+public final class RedisReliableLeasedConsumer {
+
+    private IRedisClient client;
+    private RedisCheckAndSet cas;
+    private RedisReliableConsumer<String> claimer;
+    private RedisReliableConsumer<String> releaser;
+    private RedisReliableMover reaper;
+    private IRedisReliableMover<String> imover;
+    private IRedisReliableDeleter<String> ideleter;
+    private RedisReliableNotifier notifier;
+    private long timeout;
+
+    public RedisReliableLeasedConsumer(IRedisClient client, IRedisReliableMover<String> imover, IRedisReliableDeleter<String> ideleter, long timeout) {
+        this(new RedisCheckAndSet(client, RedisCheckAndSetRetryPolicy.DEFAULT), imover, ideleter, timeout);
+    }
+
+    public RedisReliableLeasedConsumer(RedisCheckAndSet cas, IRedisReliableMover<String> imover, IRedisReliableDeleter<String> ideleter, long timeout) {
+        this.client = cas.client();
+        this.cas = cas;
+        this.timeout = timeout;
+        this.imover = imover;
+        this.ideleter = ideleter;
+        this.reaper = new RedisReliableMover(cas);
+        RedisReliableLeasedDeleter deleter = RedisReliableLeasedDeleter.of(ideleter);
+        this.claimer = new RedisReliableConsumer<String>(cas, new RedisReliableLeasedMover(imover, timeout), deleter);
+        this.releaser = new RedisReliableConsumer<String>(cas, new RedisReliableLeasedMover(imover), deleter);
+    }
+
+    public RedisReliableLeasedConsumer notifier(RedisReliableNotifier notifier) {
+        claimer.notifier(notifier);
+        releaser.notifier(notifier);
+        this.notifier = notifier;
+        return this;
+    }
+
+    public long timeout() {
+        return timeout;
+    }
+
+    public String consume(String key, String inprocesskey) throws WrongTypeException {
+        return claimer.consume(key, inprocesskey);
+    }
+
+    public List<String> consume(String key, String inprocesskey, int maxCount) throws WrongTypeException {
+        return claimer.consume(key, inprocesskey, maxCount);
+    }
+
+    public String consume(String key, String inprocesskey, long wait, TimeUnit unit) throws WrongTypeException, InterruptedException {
+        return claimer.consume(key, inprocesskey, wait, unit);
+    }
+
+    public String ack(String key, String inprocesskey, String element) throws WrongTypeException {
+        return claimer.ack(key, inprocesskey, element);
+    }
+
+    public List<String> ack(String key, String inprocesskey, Collection<String> elements) throws WrongTypeException {
+        return claimer.ack(key, inprocesskey, elements);
+    }
+
+    public String fail(String key, String inprocesskey, String element) throws WrongTypeException {
+        return releaser.fail(key, inprocesskey, element);
+    }
+
+    // Fails element back onto key only while its lease has still run out
+    // by now. The move watches the lease sorted set, so an extend that
+    // lands after the lease was read keeps the element in process.
+    public String reap(String key, String inprocesskey, String element, long now) throws WrongTypeException {
+        RedisCheckAndSetResult<String> result = tryReap(key, inprocesskey, element, now);
+        return (result.committed() ? result.value() : null);
+    }
+
+    // As reap, but with the move's result: PRECONDITION_FAILED means the
+    // element was not in process or its lease no longer ran out, while
+    // ABORTED and ERROR say nothing about either.
+    public RedisCheckAndSetResult<String> tryReap(String key, String inprocesskey, String element, long now) throws WrongTypeException {
+        String leases = RedisReliableLeasedMover.leases(inprocesskey);
+        RedisCheckAndSetResult<String> result = reaper.tryMove(RedisReliableLeasedMover.reaping(imover, now), inprocesskey, key, element, Arrays.asList(leases));
+        if (result.committed() && result.value() != null && notifier != null) {
+            notifier.signal(key);
+        }
+        return result;
+    }
+
+    public boolean extend(String inprocesskey, String element) {
+        return extend(inprocesskey, element, timeout);
+    }
+
+    // Pushes the lease out to now plus extension, as long as the element
+    // still holds one; false once it has been acked, failed or reaped.
+    public boolean extend(String inprocesskey, final String element, final long extension) {
+        String leases = RedisReliableLeasedMover.leases(inprocesskey);
+        List<Object> replies = cas.checkAndSet(new IRedisCheckAndSet<Double>() {
+                @Override public Double get(IRedisClient client, String key) {
+                    try {
+                        return client.zscore(key, element);
+                    }
+                    catch (RuntimeException e) {
+                        throw e;
+                    }
+                    catch (Exception e) {
+                        return null;
+                    }
+                }
+                @Override public IRedisClient set(IRedisClient multi, String key, Double get) {
+                    try {
+                        if (get != null) {
+                            multi.zadd(key, new ZsetPair(element, (double)(System.currentTimeMillis() + extension)));
+                        }
+                    }
+                    catch (Exception e) {
+                    }
+                    return multi;
+                }
+            }, leases);
+        return (replies != null && !replies.isEmpty());
+    }
+
+    // Up to maxCount elements whose lease ran out before now, oldest first.
+    public List<String> expired(String inprocesskey, long now, int maxCount) {
+        try {
+            Set<ZsetPair> expired = client.zrangebyscore(RedisReliableLeasedMover.leases(inprocesskey), "-inf", String.valueOf(now), "limit", "0", String.valueOf(maxCount));
+            if (expired == null) {
+                return Collections.<String>emptyList();
+            }
+            List<String> elements = new ArrayList<String>(expired.size());
+            for (ZsetPair pair : expired) {
+                elements.add(pair.member);
+            }
+            return elements;
+        }
+        catch (Exception e) {
+            return Collections.<String>emptyList();
+        }
+    }
+
+    // Drops a lease that ran out before now but whose element is no longer
+    // in process, e.g. one acked by a consumer that does not lease. Both
+    // the lease and the in process key are watched, so an element claimed
+    // again or failed back in the meantime keeps its lease.
+    public boolean forget(String inprocesskey, final String element, final long now) {
+        String leases = RedisReliableLeasedMover.leases(inprocesskey);
+        List<Object> replies = cas.checkAndSet(new IRedisMultiCheckAndSet<Double>() {
+                @Override public Double get(IRedisClient client, List<String> keys) {
+                    try {
+                        Double score = client.zscore(keys.get(1), element);
+                        if (score == null || score > (double)now) {
+                            return null;
+                        }
+                        String type = client.type(keys.get(0));
+                        if (type != null && !type.equals("none") && !type.equals(ideleter.type())) {
+                            return null;
+                        }
+                        return (ideleter.verify(client, keys.get(0), element) == null ? score : null);
+                    }
+                    catch (RuntimeException e) {
+                        throw e;
+                    }
+                    catch (Exception e) {
+                        return null;
+                    }
+                }
+                @Override public IRedisClient set(IRedisClient multi, List<String> keys, Double get) {
+                    try {
+                        if (get != null) {
+                            multi.zrem(keys.get(1), element);
+                        }
+                    }
+                    catch (Exception e) {
+                    }
+                    return multi;
+                }
+            }, inprocesskey, leases);
+        return (replies != null && !replies.isEmpty());
+    }
+
+    public static RedisReliableLeasedConsumer ListConsumer(IRedisClient client, long timeout) {
+        return new RedisReliableLeasedConsumer(client, new RedisReliableListMover(true), new RedisReliableListDeleter(), timeout);
+    }
+
+    public static RedisReliableLeasedConsumer SetConsumer(IRedisClient client, long timeout) {
+        return new RedisReliableLeasedConsumer(client, new RedisReliableSetMover(), new RedisReliableSetDeleter(), timeout);
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.IRedisClient;
+
+// Wraps a deleter so that deleting an element also drops its lease, in the
+// same transaction. Use of to keep batch acks when the wrapped deleter
+// supports them.
+public class RedisReliableLeasedDeleter implements IRedisReliableDeleter<String> {
+
+    private IRedisReliableDeleter<String> deleter;
+
+    public RedisReliableLeasedDeleter(IRedisReliableDeleter<String> deleter) {
+        this.deleter = deleter;
+    }
+
+    public static RedisReliableLeasedDeleter of(IRedisReliableDeleter<String> deleter) {
+        if (deleter instanceof IRedisReliableBatchDeleter) {
+            return new RedisReliableLeasedBatchDeleter((IRedisReliableBatchDeleter<String>)deleter);
+        }
+        return new RedisReliableLeasedDeleter(deleter);
+    }
+
+    @Override public String type() {
+        return deleter.type();
+    }
+
+    @Override public String verify(IRedisClient client, String key, String element) {
+        return deleter.verify(client, key, element);
+    }
+
+    @Override public IRedisClient multi(IRedisClient multi, String key, String element) {
+        multi = deleter.multi(multi, key, element);
+        try {
+            multi.zrem(RedisReliableLeasedMover.leases(key), element);
+        }
+        catch (Exception e) {
+        }
+        return multi;
+    }
+
+}
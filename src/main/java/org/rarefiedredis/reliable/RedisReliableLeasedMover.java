@@ -0,0 +1,130 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.IRedisClient;
+import org.rarefiedredis.redis.IRedisSortedSet.ZsetPair;
+
+import java.util.List;
+import java.util.ArrayList;
+
+// Wraps a mover so that the move also records or clears a lease in the
+// same transaction. Claiming (a positive timeout) scores the element in
+// dest's lease sorted set with the time its lease runs out; releasing (no
+// timeout) removes it from source's. Reaping releases an element only
+// while its lease in source's sorted set has run out, so the move has to
+// watch that sorted set too.
+public final class RedisReliableLeasedMover implements IRedisReliableBatchMover<String> {
+
+    private IRedisReliableMover<String> mover;
+    private long timeout;
+    private long expiredBy;
+
+    public RedisReliableLeasedMover(IRedisReliableMover<String> mover, long timeout) {
+        this(mover, timeout, 0L);
+    }
+
+    public RedisReliableLeasedMover(IRedisReliableMover<String> mover) {
+        this(mover, 0L, 0L);
+    }
+
+    private RedisReliableLeasedMover(IRedisReliableMover<String> mover, long timeout, long expiredBy) {
+        this.mover = mover;
+        this.timeout = timeout;
+        this.expiredBy = expiredBy;
+    }
+
+    // Releases a single element whose lease ran out by now.
+    public static RedisReliableLeasedMover reaping(IRedisReliableMover<String> mover, long now) {
+        return new RedisReliableLeasedMover(mover, 0L, Math.max(1L, now));
+    }
+
+    public static String leases(String inprocesskey) {
+        return inprocesskey + ":leases";
+    }
+
+    @Override public String type() {
+        return mover.type();
+    }
+
+    @Override public String verify(IRedisClient client, String source, String dest, String element) {
+        if (expiredBy > 0L && !expired(client, source, element)) {
+            return null;
+        }
+        return mover.verify(client, source, dest, element);
+    }
+
+    @Override public IRedisClient multi(IRedisClient multi, String source, String dest, String get) {
+        multi = mover.multi(multi, source, dest, get);
+        if (multi == null) {
+            return null;
+        }
+        List<String> moved = new ArrayList<String>(1);
+        moved.add(get);
+        return lease(multi, source, dest, moved);
+    }
+
+    @Override public List<String> verify(IRedisClient client, String source, String dest, int maxCount) {
+        if (expiredBy > 0L) {
+            return null;
+        }
+        if (mover instanceof IRedisReliableBatchMover) {
+            return ((IRedisReliableBatchMover<String>)mover).verify(client, source, dest, maxCount);
+        }
+        String element = mover.verify(client, source, dest, null);
+        if (element == null) {
+            return null;
+        }
+        List<String> elements = new ArrayList<String>(1);
+        elements.add(element);
+        return elements;
+    }
+
+    @Override public IRedisClient multi(IRedisClient multi, String source, String dest, List<String> get) {
+        if (mover instanceof IRedisReliableBatchMover) {
+            multi = ((IRedisReliableBatchMover<String>)mover).multi(multi, source, dest, get);
+        }
+        else {
+            multi = mover.multi(multi, source, dest, get.get(0));
+        }
+        if (multi == null) {
+            return null;
+        }
+        return lease(multi, source, dest, get);
+    }
+
+    private boolean expired(IRedisClient client, String source, String element) {
+        if (element == null) {
+            return false;
+        }
+        try {
+            Double expires = client.zscore(leases(source), element);
+            return (expires != null && expires <= (double)expiredBy);
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            return false;
+        }
+    }
+
+    private IRedisClient lease(IRedisClient multi, String source, String dest, List<String> moved) {
+        try {
+            if (timeout > 0L) {
+                double expires = (double)(System.currentTimeMillis() + timeout);
+                ZsetPair[] rest = new ZsetPair[moved.size() - 1];
+                for (int i = 1; i < moved.size(); ++i) {
+                    rest[i - 1] = new ZsetPair(moved.get(i), expires);
+                }
+                multi.zadd(leases(dest), new ZsetPair(moved.get(0), expires), rest);
+            }
+            else {
+                multi.zrem(leases(source), moved.get(0), moved.subList(1, moved.size()).toArray(new String[0]));
+            }
+        }
+        catch (Exception e) {
+            return null;
+        }
+        return multi;
+    }
+
+}
@@ -5,10 +5,19 @@ import org.rarefiedredis.adapter.RedisListAdapter;
 
 import java.security.SecureRandom;
 import java.math.BigInteger;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.LinkedList;
 
-public final class RedisReliableListDeleter implements IRedisReliableDeleter<String> {
+public final class RedisReliableListDeleter implements IRedisReliableBatchDeleter<String> {
 
-    private int index;
+    // Kept per thread between verify and multi; async acks share the
+    // deleter.
+    private ThreadLocal<Integer> index = new ThreadLocal<Integer>();
+    private ThreadLocal<List<Long>> indices = new ThreadLocal<List<Long>>();
     private SecureRandom random = new SecureRandom();
 
     @Override public String type() {
@@ -17,12 +26,16 @@ public final class RedisReliableListDeleter implements IRedisReliableDeleter<Str
 
     @Override public String verify(IRedisClient client, String key, String element) { 
         try {
-            index = new RedisListAdapter(client, key).indexOf(element);
-            if (index == -1) {
+            int at = new RedisListAdapter(client, key).indexOf(element);
+            index.set(at);
+            if (at == -1) {
                 return null;
             }
             return element;
         }
+        catch (RuntimeException e) {
+            throw e;
+        }
         catch (Exception e) {
             return null;
         }
@@ -31,11 +44,63 @@ public final class RedisReliableListDeleter implements IRedisReliableDeleter<Str
     @Override public IRedisClient multi(IRedisClient multi, String key, String element) {
         try {
             String value = element + ";" + (new BigInteger(130, random)).toString(32);
-            multi.lset(key, (long)index, value);
+            multi.lset(key, (long)index.get(), value);
             multi.lrem(key, 1L, value);
         }
         catch (Exception e) {
         }
         return multi;
     }
+
+    // One LRANGE over the list finds every element; each occurrence asked
+    // for claims its own index.
+    @Override public List<String> verify(IRedisClient client, String key, Collection<String> elements) {
+        try {
+            List<String> range = client.lrange(key, 0L, -1L);
+            if (range == null || range.isEmpty()) {
+                return null;
+            }
+            Map<String, LinkedList<Long>> positions = new HashMap<String, LinkedList<Long>>();
+            long i = 0L;
+            for (String value : range) {
+                LinkedList<Long> at = positions.get(value);
+                if (at == null) {
+                    at = new LinkedList<Long>();
+                    positions.put(value, at);
+                }
+                at.add(i++);
+            }
+            List<String> found = new ArrayList<String>();
+            List<Long> claimed = new ArrayList<Long>();
+            for (String element : elements) {
+                LinkedList<Long> at = positions.get(element);
+                if (at != null && !at.isEmpty()) {
+                    found.add(element);
+                    claimed.add(at.removeFirst());
+                }
+            }
+            indices.set(claimed);
+            return (found.isEmpty() ? null : found);
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    // Every index gets the same tombstone, so one LREM clears them all.
+    @Override public IRedisClient multi(IRedisClient multi, String key, List<String> elements) {
+        try {
+            String value = elements.get(0) + ";" + (new BigInteger(130, random)).toString(32);
+            for (Long i : indices.get()) {
+                multi.lset(key, i, value);
+            }
+            multi.lrem(key, 0L, value);
+        }
+        catch (Exception e) {
+        }
+        return multi;
+    }
 }
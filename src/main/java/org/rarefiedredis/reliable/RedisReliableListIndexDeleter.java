@@ -8,7 +8,7 @@ import java.math.BigInteger;
 
 public final class RedisReliableListIndexDeleter implements IRedisReliableDeleter<Long> {
 
-    private String element;
+    private ThreadLocal<String> element = new ThreadLocal<String>();
     private SecureRandom random = new SecureRandom();
 
     @Override public String type() {
@@ -20,18 +20,21 @@ public final class RedisReliableListIndexDeleter implements IRedisReliableDelete
             if (index == null) {
                 return null;
             }
-            element = client.lindex(key, index);
-            return (element != null ? index : null);
+            element.set(client.lindex(key, index));
+            return (element.get() != null ? index : null);
+        }
+        catch (RuntimeException e) {
+            throw e;
         }
         catch (Exception e) {
-            element = null;
+            element.set(null);
             return null;
         }
     }
 
     @Override public IRedisClient multi(IRedisClient multi, String key, Long index) {
         try {
-            String value = element + ";" + (new BigInteger(130, random)).toString(32);
+            String value = element.get() + ";" + (new BigInteger(130, random)).toString(32);
             multi.lset(key, index, value);
             multi.lrem(key, 1L, value);
         }
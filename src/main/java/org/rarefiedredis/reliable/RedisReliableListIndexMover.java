@@ -8,7 +8,9 @@ import java.math.BigInteger;
 
 public final class RedisReliableListIndexMover implements IRedisReliableMover<Map.Entry<Long, Long>> {
 
-    private String element;
+    // What verify read, kept per thread for the multi that follows.
+    private ThreadLocal<String> element = new ThreadLocal<String>();
+    private ThreadLocal<Long> padding = new ThreadLocal<Long>();
     private SecureRandom random = new SecureRandom();
 
     @Override public String type() {
@@ -19,15 +21,18 @@ public final class RedisReliableListIndexMover implements IRedisReliableMover<Ma
         try {
             Long sindex = indices.getKey();
             Long dindex = indices.getValue();
-            element = client.lindex(source, sindex);
-            if (element == null) {
+            element.set(client.lindex(source, sindex));
+            if (element.get() == null) {
                 return null; // TODO: Not the best way, but how else would we do it?
             }
-            for (Long llen = client.llen(dest); llen <= dindex; ++llen) {
-                client.rpush(dest, "");
-            }
+            // Padding is queued with the move so that dest, which is
+            // watched, is not written to before EXEC.
+            padding.set(Math.max(0L, dindex + 1L - client.llen(dest)));
             return indices;
         }
+        catch (RuntimeException e) {
+            throw e;
+        }
         catch (Exception e) {
             return null;
         }
@@ -35,10 +40,13 @@ public final class RedisReliableListIndexMover implements IRedisReliableMover<Ma
 
     @Override public IRedisClient multi(IRedisClient multi, String source, String dest, Map.Entry<Long, Long> indices) {
         try {
-            String value = element + ";" + (new BigInteger(130, random)).toString(32);
+            String value = element.get() + ";" + (new BigInteger(130, random)).toString(32);
             multi.lset(source, indices.getKey(), value);
             multi.lrem(source, 1, value);
-            multi.lset(dest, indices.getValue(), element);
+            for (long p = 0L; p < padding.get(); ++p) {
+                multi.rpush(dest, "");
+            }
+            multi.lset(dest, indices.getValue(), element.get());
         }
         catch (Exception e) {
             return null;
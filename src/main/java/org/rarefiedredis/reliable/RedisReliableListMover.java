@@ -5,10 +5,15 @@ import org.rarefiedredis.adapter.RedisListAdapter;
 
 import java.security.SecureRandom;
 import java.math.BigInteger;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
 
-public final class RedisReliableListMover implements IRedisReliableMover<String> {
+public final class RedisReliableListMover implements IRedisReliableBatchMover<String> {
 
-    private Long index;
+    // verify and multi run on the same thread, and async consumes share
+    // the mover, so the index verify found is kept per thread.
+    private ThreadLocal<Long> index = new ThreadLocal<Long>();
     private boolean ignoreDestIndex;
     private SecureRandom random = new SecureRandom();
 
@@ -27,14 +32,18 @@ public final class RedisReliableListMover implements IRedisReliableMover<String>
     @Override public String verify(IRedisClient client, String source, String dest, String element) {
         try {
             if (element == null) {
-                index = -1L;
+                index.set(-1L);
                 return client.lindex(source, -1L);
             }
-            index = (long)(new RedisListAdapter(client, source)).indexOf(element);
-            if (index == -1) {
+            long at = (long)(new RedisListAdapter(client, source)).indexOf(element);
+            index.set(at);
+            if (at == -1L) {
                 return null;
             }
-            return client.lindex(source, index);
+            return client.lindex(source, at);
+        }
+        catch (RuntimeException e) {
+            throw e;
         }
         catch (Exception e) {
             return null;
@@ -43,18 +52,19 @@ public final class RedisReliableListMover implements IRedisReliableMover<String>
 
     @Override public IRedisClient multi(IRedisClient multi, String source, String dest, String get) {
         try {
-            if (index == -1L) {
+            long at = index.get();
+            if (at == -1L) {
                 multi.rpoplpush(source, dest);
             }
             else {
                 String value = get + ";" + (new BigInteger(130, random)).toString(32);
-                multi.lset(source, index, value);
+                multi.lset(source, at, value);
                 multi.lrem(source, 1, value);
                 if (ignoreDestIndex) {
                     multi.lpush(dest, get);
                 }
                 else {
-                    multi.lset(dest, index, get);
+                    multi.lset(dest, at, get);
                 }
             }
         }
@@ -64,4 +74,39 @@ public final class RedisReliableListMover implements IRedisReliableMover<String>
         return multi;
     }
 
+    // The tail of the list, in the order RPOPLPUSH takes it.
+    @Override public List<String> verify(IRedisClient client, String source, String dest, int maxCount) {
+        try {
+            // A start before the head is not clamped by every client.
+            long length = client.llen(source);
+            if (length == 0L) {
+                return null;
+            }
+            List<String> range = client.lrange(source, -Math.min((long)maxCount, length), -1L);
+            if (range == null || range.isEmpty()) {
+                return null;
+            }
+            List<String> tail = new ArrayList<String>(range);
+            Collections.reverse(tail);
+            return tail;
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override public IRedisClient multi(IRedisClient multi, String source, String dest, List<String> get) {
+        try {
+            for (int i = 0; i < get.size(); ++i) {
+                multi.rpoplpush(source, dest);
+            }
+        }
+        catch (Exception e) {
+            return null;
+        }
+        return multi;
+    }
 }
@@ -3,9 +3,10 @@ package org.rarefiedredis.reliable;
 import org.rarefiedredis.redis.IRedisClient;
 
 import java.util.Map;
+import java.util.List;
 import java.util.Collection;
 
-public final class RedisReliableListRpushProducer implements IRedisReliableProducer<String> {
+public final class RedisReliableListRpushProducer implements IRedisReliableBatchProducer<String> {
 
     @Override public String type() {
         return "list";
@@ -20,4 +21,16 @@ public final class RedisReliableListRpushProducer implements IRedisReliableProdu
         return multi;
     }
 
+    @Override public IRedisClient multi(IRedisClient multi, String key, List<String> productions) {
+        if (productions.isEmpty()) {
+            return multi;
+        }
+        try {
+            multi.rpush(key, productions.get(0), productions.subList(1, productions.size()).toArray(new String[0]));
+        }
+        catch (Exception e) {
+        }
+        return multi;
+    }
+
 }
\ No newline at end of file
@@ -3,19 +3,40 @@ package org.rarefiedredis.reliable;
 import org.rarefiedredis.redis.IRedisClient;
 import org.rarefiedredis.redis.WrongTypeException;
 import org.rarefiedredis.concurrency.RedisCheckAndSet;
-import org.rarefiedredis.concurrency.IRedisCheckAndSet;
+import org.rarefiedredis.concurrency.RedisCheckAndSetResult;
+import org.rarefiedredis.concurrency.RedisCheckAndSetRetryPolicy;
+import org.rarefiedredis.concurrency.IRedisMultiCheckAndSet;
+import org.rarefiedredis.util.RedisTypeCache;
 
 import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 
 public final class RedisReliableMover {
 
     private RedisCheckAndSet cas;
+    private RedisTypeCache typeCache;
 
     public RedisReliableMover(IRedisClient client) {
-        cas = new RedisCheckAndSet(client);
+        this(new RedisCheckAndSet(client, RedisCheckAndSetRetryPolicy.DEFAULT));
     }
 
-    private final class RedisReliableMoverCheckAndSet<T> implements IRedisCheckAndSet<T> {
+    public RedisReliableMover(RedisCheckAndSet cas) {
+        this.cas = cas;
+    }
+
+    // Skips the TYPE round trip for keys whose type is cached.
+    public RedisReliableMover typeCache(RedisTypeCache typeCache) {
+        this.typeCache = typeCache;
+        return this;
+    }
+
+    public RedisTypeCache typeCache() {
+        return typeCache;
+    }
+
+    private final class RedisReliableMoverCheckAndSet<T> implements IRedisMultiCheckAndSet<T> {
 
         public T moved;
         public boolean wrongType;
@@ -33,15 +54,19 @@ public final class RedisReliableMover {
             this.wrongType = false;
         }
 
-        @Override public T get(IRedisClient client, String key) {
+        @Override public T get(IRedisClient client, List<String> keys) {
+            wrongType = false;
             String type = mover.type();
             String t;
             if (type != null) {
                 try {
-                    t = client.type(dest);
+                    t = (typeCache == null ? client.type(dest) : typeCache.type(client, dest));
+                }
+                catch (RuntimeException e) {
+                    throw e;
                 }
                 catch (Exception e) {
-                    return null;
+                    throw new IllegalStateException("TYPE " + dest + " failed", e);
                 }
                 if (!t.equals("none") && !t.equals(type)) {
                     wrongType = true;
@@ -51,7 +76,8 @@ public final class RedisReliableMover {
             return mover.verify(client, source, dest, element);
         }
 
-        @Override public IRedisClient set(IRedisClient multi, String key, T get) {
+        @Override public IRedisClient set(IRedisClient multi, List<String> keys, T get) {
+            moved = null;
             if (get == null) {
                 return multi;
             }
@@ -61,17 +87,116 @@ public final class RedisReliableMover {
 
     }
 
+    private final class RedisReliableBatchMoverCheckAndSet<T> implements IRedisMultiCheckAndSet<List<T>> {
+
+        public boolean wrongType;
+        private String source;
+        private String dest;
+        private int maxCount;
+        private IRedisReliableBatchMover<T> mover;
+
+        public RedisReliableBatchMoverCheckAndSet(IRedisReliableBatchMover<T> mover, String source, String dest, int maxCount) {
+            this.mover = mover;
+            this.source = source;
+            this.dest = dest;
+            this.maxCount = maxCount;
+            this.wrongType = false;
+        }
+
+        @Override public List<T> get(IRedisClient client, List<String> keys) {
+            wrongType = false;
+            String type = mover.type();
+            String t;
+            if (type != null) {
+                try {
+                    t = (typeCache == null ? client.type(dest) : typeCache.type(client, dest));
+                }
+                catch (RuntimeException e) {
+                    throw e;
+                }
+                catch (Exception e) {
+                    throw new IllegalStateException("TYPE " + dest + " failed", e);
+                }
+                if (!t.equals("none") && !t.equals(type)) {
+                    wrongType = true;
+                    return null;
+                }
+            }
+            return mover.verify(client, source, dest, maxCount);
+        }
+
+        @Override public IRedisClient set(IRedisClient multi, List<String> keys, List<T> get) {
+            if (get == null || get.isEmpty()) {
+                return multi;
+            }
+            return mover.multi(multi, source, dest, get);
+        }
+
+    }
+
     public <T> T move(final IRedisReliableMover<T> mover, final String source, final String dest) throws WrongTypeException {
         return move(mover, source, dest, null);
     }
 
     public <T> T move(final IRedisReliableMover<T> mover, final String source, final String dest, final T element) throws WrongTypeException {
+        RedisCheckAndSetResult<T> result = tryMove(mover, source, dest, element);
+        return (result.committed() ? result.value() : null);
+    }
+
+    public <T> RedisCheckAndSetResult<T> tryMove(final IRedisReliableMover<T> mover, final String source, final String dest) throws WrongTypeException {
+        return tryMove(mover, source, dest, null);
+    }
+
+    public <T> RedisCheckAndSetResult<T> tryMove(final IRedisReliableMover<T> mover, final String source, final String dest, final T element) throws WrongTypeException {
+        return tryMove(mover, source, dest, element, Collections.<String>emptyList());
+    }
+
+    // Also watches watched, for movers whose verify reads keys other than
+    // source and dest.
+    public <T> RedisCheckAndSetResult<T> tryMove(final IRedisReliableMover<T> mover, final String source, final String dest, final T element, final List<String> watched) throws WrongTypeException {
         RedisReliableMoverCheckAndSet<T> cs = new RedisReliableMoverCheckAndSet<T>(mover, source, dest, element);
-        List<Object> replies = cas.checkAndSet(cs, source);
+        List<String> keys = new ArrayList<String>(Arrays.asList(source, dest));
+        keys.addAll(watched);
+        RedisCheckAndSetResult<T> result = cas.tryCheckAndSet(cs, keys);
+        invalidate(dest, result, cs.wrongType);
         if (cs.wrongType) {
             throw new WrongTypeException();
         }
-        return (replies == null ? null : cs.moved);
+        return result;
+    }
+
+    // Up to maxCount elements moved in one transaction; empty when there
+    // was nothing to move or the transaction did not commit.
+    public <T> List<T> moveAll(final IRedisReliableBatchMover<T> mover, final String source, final String dest, final int maxCount) throws WrongTypeException {
+        RedisCheckAndSetResult<List<T>> result = tryMoveAll(mover, source, dest, maxCount);
+        return (result.committed() ? result.value() : Collections.<T>emptyList());
+    }
+
+    public <T> RedisCheckAndSetResult<List<T>> tryMoveAll(final IRedisReliableBatchMover<T> mover, final String source, final String dest, final int maxCount) throws WrongTypeException {
+        RedisReliableBatchMoverCheckAndSet<T> cs = new RedisReliableBatchMoverCheckAndSet<T>(mover, source, dest, Math.max(1, maxCount));
+        RedisCheckAndSetResult<List<T>> result = cas.tryCheckAndSet(cs, source, dest);
+        invalidate(dest, result, cs.wrongType);
+        if (cs.wrongType) {
+            throw new WrongTypeException();
+        }
+        return result;
+    }
+
+    // Only a wrong type or a failure says the cached type may be stale; an
+    // empty queue or an aborted attempt does not.
+    private void invalidate(String key, RedisCheckAndSetResult<?> result, boolean wrongType) {
+        if (typeCache == null) {
+            return;
+        }
+        boolean failed = (result.status() == RedisCheckAndSetResult.Status.ERROR);
+        if (result.replies() != null) {
+            for (Object reply : result.replies()) {
+                failed = failed || (reply instanceof Exception);
+            }
+        }
+        if (wrongType || failed) {
+            typeCache.invalidate(key);
+        }
     }
 
-}
\ No newline at end of file
+}
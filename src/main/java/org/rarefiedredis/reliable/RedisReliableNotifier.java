@@ -0,0 +1,102 @@
+package org.rarefiedredis.reliable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Wakes consumers in this JVM as soon as a producer in this JVM adds to a
+// key. Each key has a version that every signal moves; a consumer reads
+// the version before it finds the key empty and waits for it to move, so
+// a signal in between is never lost. Versions come from one sequence so
+// that a key only needs an entry while someone waits on it. Producers
+// elsewhere are only seen when the wait times out, so consumers should
+// bound their waits.
+public final class RedisReliableNotifier {
+
+    private static final class Signal {
+        private long version = -1L;
+        private int waiters;
+        private boolean removed;
+    }
+
+    private final ConcurrentMap<String, Signal> signals;
+    private final AtomicLong sequence;
+
+    public RedisReliableNotifier() {
+        this.signals = new ConcurrentHashMap<String, Signal>();
+        this.sequence = new AtomicLong();
+    }
+
+    public long version(String key) {
+        Signal signal = signals.get(key);
+        if (signal != null) {
+            synchronized (signal) {
+                if (!signal.removed && signal.version >= 0L) {
+                    return signal.version;
+                }
+            }
+        }
+        return sequence.get();
+    }
+
+    public void signal(String key) {
+        while (true) {
+            Signal signal = signals.get(key);
+            if (signal == null) {
+                // Nobody waits on this key; moving the sequence is enough
+                // for anyone who read a version and has yet to wait.
+                sequence.incrementAndGet();
+                if (signals.get(key) == null) {
+                    return;
+                }
+                continue;
+            }
+            synchronized (signal) {
+                if (signal.removed) {
+                    continue;
+                }
+                signal.version = sequence.incrementAndGet();
+                signal.notifyAll();
+                return;
+            }
+        }
+    }
+
+    // True when the key was signalled after version, false on timeout.
+    public boolean await(String key, long version, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (true) {
+            Signal signal = signals.get(key);
+            if (signal == null) {
+                signals.putIfAbsent(key, new Signal());
+                continue;
+            }
+            synchronized (signal) {
+                if (signal.removed) {
+                    continue;
+                }
+                if (signal.version < 0L) {
+                    signal.version = sequence.get();
+                }
+                ++signal.waiters;
+                try {
+                    while (signal.version == version) {
+                        long remaining = deadline - System.currentTimeMillis();
+                        if (remaining <= 0L) {
+                            return false;
+                        }
+                        signal.wait(remaining);
+                    }
+                    return true;
+                }
+                finally {
+                    if (--signal.waiters == 0) {
+                        signal.removed = true;
+                        signals.remove(key, signal);
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.IRedisClient;
+import org.rarefiedredis.redis.WrongTypeException;
+import org.rarefiedredis.concurrency.RedisCheckAndSet;
+import org.rarefiedredis.concurrency.RedisCheckAndSetResult;
+import org.rarefiedredis.concurrency.RedisCheckAndSetRetryPolicy;
+import org.rarefiedredis.concurrency.IRedisMultiCheckAndSet;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.AbstractMap;
+
+// Consumes the tiers of a RedisReliablePriorityProducer queue. One
+// transaction watches every tier and the in process key, and reads the
+// tiers in turn on that one connection until one has an element, instead
+// of running a transaction per tier. The tier read first is picked by
+// smooth weighted round robin over the weights, so lower tiers still lead
+// a share of the time; the rest follow in priority order.
+public final class RedisReliablePriorityConsumer<T> {
+
+    private IRedisClient client;
+    private RedisCheckAndSet cas;
+    private RedisReliableMover mover;
+    private IRedisReliableMover<T> imover;
+    private RedisReliableDeleter deleter;
+    private IRedisReliableDeleter<T> ideleter;
+    private int[] weights;
+    private int[] current;
+
+    public RedisReliablePriorityConsumer(IRedisClient client, IRedisReliableMover<T> imover, IRedisReliableDeleter<T> ideleter, int ... weights) {
+        this(client, new RedisCheckAndSet(client, RedisCheckAndSetRetryPolicy.DEFAULT), imover, ideleter, weights);
+    }
+
+    public RedisReliablePriorityConsumer(IRedisClient client, RedisCheckAndSet cas, IRedisReliableMover<T> imover, IRedisReliableDeleter<T> ideleter, int ... weights) {
+        if (weights.length < 1) {
+            throw new IllegalArgumentException("no tiers");
+        }
+        this.client = client;
+        this.cas = cas;
+        this.mover = new RedisReliableMover(cas);
+        this.imover = imover;
+        this.deleter = new RedisReliableDeleter(cas);
+        this.ideleter = ideleter;
+        this.weights = weights.clone();
+        this.current = new int[weights.length];
+    }
+
+    private final class RedisReliablePriorityCheckAndSet implements IRedisMultiCheckAndSet<T> {
+
+        public int tier;
+        public boolean wrongType;
+        private String key;
+        private String inprocesskey;
+        private int[] order;
+
+        public RedisReliablePriorityCheckAndSet(String key, String inprocesskey, int[] order) {
+            this.key = key;
+            this.inprocesskey = inprocesskey;
+            this.order = order;
+            this.tier = -1;
+            this.wrongType = false;
+        }
+
+        @Override public T get(IRedisClient client, List<String> keys) {
+            wrongType = false;
+            tier = -1;
+            String type = imover.type();
+            if (type != null) {
+                String t;
+                try {
+                    t = client.type(inprocesskey);
+                }
+                catch (RuntimeException e) {
+                    throw e;
+                }
+                catch (Exception e) {
+                    throw new IllegalStateException("TYPE " + inprocesskey + " failed", e);
+                }
+                if (!t.equals("none") && !t.equals(type)) {
+                    wrongType = true;
+                    return null;
+                }
+            }
+            for (int i : order) {
+                T element = imover.verify(client, RedisReliablePriorityProducer.tier(key, i), inprocesskey, null);
+                if (element != null) {
+                    tier = i;
+                    return element;
+                }
+            }
+            return null;
+        }
+
+        @Override public IRedisClient set(IRedisClient multi, List<String> keys, T get) {
+            if (get == null) {
+                return multi;
+            }
+            return imover.multi(multi, RedisReliablePriorityProducer.tier(key, tier), inprocesskey, get);
+        }
+
+    }
+
+    public int tiers() {
+        return weights.length;
+    }
+
+    // The tiers to read, lead tier first.
+    synchronized int[] order() {
+        int total = 0, lead = 0;
+        for (int i = 0; i < weights.length; ++i) {
+            current[i] += weights[i];
+            total += weights[i];
+            if (current[i] > current[lead]) {
+                lead = i;
+            }
+        }
+        current[lead] -= total;
+        int[] order = new int[weights.length];
+        order[0] = lead;
+        for (int i = 0, o = 1; i < weights.length; ++i) {
+            if (i != lead) {
+                order[o++] = i;
+            }
+        }
+        return order;
+    }
+
+    public Map.Entry<Integer, T> consume(String key, String inprocesskey) throws WrongTypeException {
+        RedisReliablePriorityCheckAndSet cs = new RedisReliablePriorityCheckAndSet(key, inprocesskey, order());
+        List<String> keys = new ArrayList<String>(weights.length + 1);
+        for (int i = 0; i < weights.length; ++i) {
+            keys.add(RedisReliablePriorityProducer.tier(key, i));
+        }
+        keys.add(inprocesskey);
+        RedisCheckAndSetResult<T> result = cas.tryCheckAndSet(cs, keys);
+        if (cs.wrongType) {
+            throw new WrongTypeException();
+        }
+        if (!result.committed()) {
+            return null;
+        }
+        return new AbstractMap.SimpleImmutableEntry<Integer, T>(cs.tier, result.value());
+    }
+
+    public T ack(String key, String inprocesskey, Map.Entry<Integer, T> consumed) throws WrongTypeException {
+        return deleter.delete(ideleter, inprocesskey, consumed.getValue());
+    }
+
+    // Puts the element back on the tier it came from.
+    public T fail(String key, String inprocesskey, Map.Entry<Integer, T> consumed) throws WrongTypeException {
+        return mover.move(imover, inprocesskey, RedisReliablePriorityProducer.tier(key, consumed.getKey()), consumed.getValue());
+    }
+
+    // The length of each tier list; -1 where it could not be read.
+    public long[] depths(String key) {
+        long[] depths = new long[weights.length];
+        for (int i = 0; i < weights.length; ++i) {
+            try {
+                Long depth = client.llen(RedisReliablePriorityProducer.tier(key, i));
+                depths[i] = (depth == null ? 0L : depth);
+            }
+            catch (Exception e) {
+                depths[i] = -1L;
+            }
+        }
+        return depths;
+    }
+
+    public static RedisReliablePriorityConsumer<String> ListConsumer(IRedisClient client, int ... weights) {
+        return new RedisReliablePriorityConsumer<String>(client, new RedisReliableListMover(true), new RedisReliableListDeleter(), weights);
+    }
+
+}
@@ -0,0 +1,43 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.IRedisClient;
+import org.rarefiedredis.redis.WrongTypeException;
+
+import java.util.List;
+
+// Produces to one of several priority tiers of a queue, tier 0 being the
+// most urgent. Tier keys are {key}:0 .. {key}:N-1; the hash tag keeps them
+// in one cluster slot so that a consumer can watch them all at once.
+public final class RedisReliablePriorityProducer<T> {
+
+    private RedisReliableProducer<T> producer;
+    private int tiers;
+
+    public RedisReliablePriorityProducer(RedisReliableProducer<T> producer, int tiers) {
+        if (tiers < 1) {
+            throw new IllegalArgumentException("tiers must be positive");
+        }
+        this.producer = producer;
+        this.tiers = tiers;
+    }
+
+    public static String tier(String key, int tier) {
+        return "{" + key + "}:" + tier;
+    }
+
+    public int tiers() {
+        return tiers;
+    }
+
+    public List<Object> produce(String key, int tier, T ... productions) throws WrongTypeException {
+        if (tier < 0 || tier >= tiers) {
+            throw new IllegalArgumentException("no tier " + tier);
+        }
+        return producer.produce(tier(key, tier), productions);
+    }
+
+    public static RedisReliablePriorityProducer<String> ListProducer(IRedisClient client, int tiers) {
+        return new RedisReliablePriorityProducer<String>(RedisReliableProducer.ListProducer(client), tiers);
+    }
+
+}
@@ -3,21 +3,114 @@ package org.rarefiedredis.reliable;
 import org.rarefiedredis.redis.IRedisClient;
 import org.rarefiedredis.redis.WrongTypeException;
 import org.rarefiedredis.concurrency.RedisCheckAndSet;
+import org.rarefiedredis.concurrency.RedisCheckAndSetResult;
+import org.rarefiedredis.concurrency.RedisCheckAndSetRetryPolicy;
+import org.rarefiedredis.concurrency.RedisCommandCounter;
+import org.rarefiedredis.concurrency.RedisExecutors;
 import org.rarefiedredis.concurrency.IRedisCheckAndSet;
+import org.rarefiedredis.util.RedisTypeCache;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public final class RedisReliableProducer<T> {
 
     private RedisCheckAndSet cas;
     private IRedisReliableProducer<T> iproducer;
+    private ExecutorService executor;
+    private int batchSize;
+    private boolean unwatched;
+    private long typeCheckInterval;
+    private Map<String, Long> typeChecked;
+    private RedisTypeCache typeCache;
+    private RedisReliableNotifier notifier;
 
     public RedisReliableProducer(IRedisClient client, IRedisReliableProducer<T> iproducer) {
-        cas = new RedisCheckAndSet(client);
+        this(new RedisCheckAndSet(client, RedisCheckAndSetRetryPolicy.DEFAULT), iproducer);
+    }
+
+    public RedisReliableProducer(RedisCheckAndSet cas, IRedisReliableProducer<T> iproducer) {
+        this(cas, iproducer, RedisExecutors.defaultExecutor());
+    }
+
+    public RedisReliableProducer(RedisCheckAndSet cas, IRedisReliableProducer<T> iproducer, ExecutorService executor) {
+        this.cas = cas;
         this.iproducer = iproducer;
+        this.executor = executor;
+        this.batchSize = 1;
+        this.unwatched = false;
+        this.typeCheckInterval = 0L;
+        this.typeChecked = new ConcurrentHashMap<String, Long>();
+    }
+
+    // Productions per queued command when the producer can push many values
+    // at once. 1 queues one command per production.
+    public RedisReliableProducer<T> batchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+        return this;
+    }
+
+    public int batchSize() {
+        return batchSize;
+    }
+
+    // Produces with a plain MULTI/EXEC and no WATCH. The key's type is
+    // checked at most once per interval in milliseconds, or never when the
+    // interval is negative, and rechecked after a write fails.
+    public RedisReliableProducer<T> unwatched(long typeCheckInterval) {
+        this.unwatched = true;
+        this.typeCheckInterval = typeCheckInterval;
+        return this;
+    }
+
+    // Skips the TYPE round trip for keys whose type is cached.
+    public RedisReliableProducer<T> typeCache(RedisTypeCache typeCache) {
+        this.typeCache = typeCache;
+        return this;
+    }
+
+    public RedisTypeCache typeCache() {
+        return typeCache;
+    }
+
+    // Wakes consumers in this JVM that wait on the key.
+    public RedisReliableProducer<T> notifier(RedisReliableNotifier notifier) {
+        this.notifier = notifier;
+        return this;
+    }
+
+    public RedisReliableProducer<T> watched() {
+        this.unwatched = false;
+        typeChecked.clear();
+        return this;
+    }
+
+    private boolean typeCheckDue(String key) {
+        if (!unwatched) {
+            return true;
+        }
+        if (typeCheckInterval < 0L) {
+            return false;
+        }
+        Long checked = typeChecked.get(key);
+        return (checked == null || System.currentTimeMillis() - checked >= typeCheckInterval);
+    }
+
+    private void typeCheckPassed(String key) {
+        if (!unwatched || typeCheckInterval <= 0L) {
+            return;
+        }
+        if (typeChecked.size() >= 4096) {
+            typeChecked.clear();
+        }
+        typeChecked.put(key, System.currentTimeMillis());
     }
 
     private final class RedisReliableProducerCheckAndSet<T> implements IRedisCheckAndSet<T[]> {
@@ -25,50 +118,176 @@ public final class RedisReliableProducer<T> {
         private T[] productions;
         private boolean wrongType;
         private IRedisReliableProducer<T> producer;
+        // When counting, the first reply and the number of replies of each
+        // production; productions pushed by one command share its reply.
+        private int[] first;
+        private int[] count;
 
-        public RedisReliableProducerCheckAndSet(IRedisReliableProducer<T> producer, T[] productions) {
+        public RedisReliableProducerCheckAndSet(IRedisReliableProducer<T> producer, T[] productions, boolean counting) {
             this.productions = productions;
             this.producer = producer;
             wrongType = false;
+            if (counting) {
+                first = new int[productions.length];
+                count = new int[productions.length];
+            }
         }
 
         @Override public T[] get(IRedisClient client, String key) {
+            wrongType = false;
             String type = producer.type();
             String t;
-            if (type != null) {
+            if (type != null && typeCheckDue(key)) {
                 try {
-                    t = client.type(key);
+                    t = (typeCache == null ? client.type(key) : typeCache.type(client, key));
+                }
+                catch (RuntimeException e) {
+                    throw e;
                 }
                 catch (Exception e) {
-                    return null;
+                    throw new IllegalStateException("TYPE " + key + " failed", e);
                 }
                 if (!t.equals("none") && !t.equals(type)) {
                     wrongType = true;
                     return null;
                 }
+                if (t.equals(type)) {
+                    typeCheckPassed(key);
+                }
             }
             return productions;
         }
 
         @Override public IRedisClient set(IRedisClient multi, String key, T[] get) {
-            if (wrongType) {
+            if (wrongType || get == null) {
                 return multi;
             }
-            for (T production : get) {
-                multi = producer.multi(multi, key, production);
+            if (producer instanceof IRedisReliableStatefulProducer) {
+                ((IRedisReliableStatefulProducer<T>)producer).begin(key);
+            }
+            if (batchSize > 1 && producer instanceof IRedisReliableBatchProducer) {
+                IRedisReliableBatchProducer<T> batch = (IRedisReliableBatchProducer<T>)producer;
+                List<T> productions = Arrays.asList(get);
+                int at = 0;
+                for (int i = 0; i < productions.size(); i += batchSize) {
+                    int to = Math.min(i + batchSize, productions.size());
+                    if (first == null) {
+                        multi = batch.multi(multi, key, productions.subList(i, to));
+                        continue;
+                    }
+                    RedisCommandCounter counter = new RedisCommandCounter(multi);
+                    if (batch.multi(counter.client(), key, productions.subList(i, to)) == null) {
+                        return null;
+                    }
+                    Arrays.fill(first, i, to, at);
+                    Arrays.fill(count, i, to, counter.queued());
+                    at += counter.queued();
+                }
+                return multi;
+            }
+            int at = 0;
+            for (int i = 0; i < get.length; ++i) {
+                if (first == null) {
+                    multi = producer.multi(multi, key, get[i]);
+                    continue;
+                }
+                RedisCommandCounter counter = new RedisCommandCounter(multi);
+                if (producer.multi(counter.client(), key, get[i]) == null) {
+                    return null;
+                }
+                first[i] = at;
+                count[i] = counter.queued();
+                at += counter.queued();
             }
             return multi;
         }
 
+        public List<List<Object>> split(List<Object> replies) {
+            List<List<Object>> split = new ArrayList<List<Object>>(productions.length);
+            for (int i = 0; i < productions.length; ++i) {
+                int from = Math.min(first[i], replies.size());
+                split.add(replies.subList(from, Math.min(from + count[i], replies.size())));
+            }
+            return split;
+        }
+
     }
 
     public List<Object> produce(final String key, final T ... productions) throws WrongTypeException {
-        RedisReliableProducerCheckAndSet<T> cs = new RedisReliableProducerCheckAndSet<T>(iproducer, productions);
-        List<Object> replies = cas.checkAndSet(cs, key);
-        if (cs.wrongType) {
+        return tryProduce(key, productions).replies();
+    }
+
+    public RedisCheckAndSetResult<T[]> tryProduce(final String key, final T ... productions) throws WrongTypeException {
+        return tryProduce(new RedisReliableProducerCheckAndSet<T>(iproducer, productions, false), key);
+    }
+
+    // Also hands back, once committed, the replies of the commands each
+    // production queued, for producers that queue any number per
+    // production.
+    RedisCheckAndSetResult<T[]> tryProduce(String key, T[] productions, List<List<Object>> replies) throws WrongTypeException {
+        RedisReliableProducerCheckAndSet<T> cs = new RedisReliableProducerCheckAndSet<T>(iproducer, productions, true);
+        RedisCheckAndSetResult<T[]> result = tryProduce(cs, key);
+        if (result.committed()) {
+            replies.addAll(cs.split(result.replies()));
+        }
+        return result;
+    }
+
+    private RedisCheckAndSetResult<T[]> tryProduce(RedisReliableProducerCheckAndSet<T> cs, String key) throws WrongTypeException {
+        if (!unwatched) {
+            RedisCheckAndSetResult<T[]> result = cas.tryCheckAndSet(cs, key);
+            if (typeCache != null && (cs.wrongType || result.status() == RedisCheckAndSetResult.Status.ERROR || failed(result.replies()))) {
+                typeCache.invalidate(key);
+            }
+            if (cs.wrongType) {
+                throw new WrongTypeException();
+            }
+            committed(key, result);
+            return result;
+        }
+        RedisCheckAndSetResult<T[]> result = cas.tryExec(cs, key);
+        if (cs.wrongType || result.status() == RedisCheckAndSetResult.Status.ERROR || failed(result.replies())) {
+            typeChecked.remove(key);
+            if (typeCache != null) {
+                typeCache.invalidate(key);
+            }
+        }
+        if (cs.wrongType || failed(result.replies())) {
             throw new WrongTypeException();
         }
-        return replies;
+        committed(key, result);
+        return result;
+    }
+
+    private void committed(String key, RedisCheckAndSetResult<T[]> result) {
+        if (iproducer instanceof IRedisReliableStatefulProducer && result.committed()) {
+            ((IRedisReliableStatefulProducer<T>)iproducer).committed(key, result.replies());
+        }
+        if (notifier != null && result.committed()) {
+            notifier.signal(key);
+        }
+    }
+
+    // Without WATCH a push can reach a key of another type; EXEC then
+    // reports the error in place of the reply.
+    private boolean failed(List<Object> replies) {
+        if (replies == null) {
+            return false;
+        }
+        for (Object reply : replies) {
+            if (reply instanceof Exception) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Future<List<Object>> produceAsync(final String key, final T ... productions) {
+        return executor.submit(new Callable<List<Object>>() {
+                @Override public List<Object> call() throws WrongTypeException {
+                    return produce(key, productions);
+                }
+            });
     }
 
     public static RedisReliableProducer<String> StringProducer(IRedisClient client) {
@@ -83,8 +302,32 @@ public final class RedisReliableProducer<T> {
         return new RedisReliableProducer<String>(client, new RedisReliableListRpushProducer());
     }
 
+    public static RedisReliableProducer<String> ListProducer(IRedisClient client, int batchSize) {
+        return ListProducer(client).batchSize(batchSize);
+    }
+
+    public static RedisReliableProducer<String> ListRpushProducer(IRedisClient client, int batchSize) {
+        return ListRpushProducer(client).batchSize(batchSize);
+    }
+
+    public static RedisReliableProducer<String> SetProducer(IRedisClient client) {
+        return new RedisReliableProducer<String>(client, new RedisReliableSetProducer());
+    }
+
+    public static RedisReliableProducer<String> SetProducer(IRedisClient client, int batchSize) {
+        return SetProducer(client).batchSize(batchSize);
+    }
+
+    public static RedisReliableProducer<Map.Entry<String, String>> HashProducer(IRedisClient client) {
+        return new RedisReliableProducer<Map.Entry<String, String>>(client, new RedisReliableHashProducer()).batchSize(Integer.MAX_VALUE);
+    }
+
     public static RedisReliableProducer<String> BoundedListProducer(IRedisClient client, long bound) {
         return new RedisReliableProducer<String>(client, new RedisReliableBoundedListProducer(bound));
     }
 
+    public static RedisReliableProducer<String> BoundedListProducer(IRedisClient client, long bound, long slack) {
+        return new RedisReliableProducer<String>(client, new RedisReliableBoundedListProducer(bound, slack, client));
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,84 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.WrongTypeException;
+import org.rarefiedredis.concurrency.RedisCheckAndSetResult;
+
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
+// Hands elements whose lease ran out back to their queue through the
+// consumer's reap, at most batchSize per pass so one pass never holds up
+// the consumers for long. Passes run on demand or on a daemon timer.
+public final class RedisReliableReaper {
+
+    private RedisReliableLeasedConsumer consumer;
+    private String key;
+    private String inprocesskey;
+    private int batchSize;
+    private Timer timer;
+    private volatile long reaped;
+
+    public RedisReliableReaper(RedisReliableLeasedConsumer consumer, String key, String inprocesskey) {
+        this(consumer, key, inprocesskey, 100);
+    }
+
+    public RedisReliableReaper(RedisReliableLeasedConsumer consumer, String key, String inprocesskey, int batchSize) {
+        this.consumer = consumer;
+        this.key = key;
+        this.inprocesskey = inprocesskey;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    // The number of elements handed back by this pass.
+    public synchronized int reap() throws WrongTypeException {
+        long now = System.currentTimeMillis();
+        List<String> expired = consumer.expired(inprocesskey, now, batchSize);
+        int count = 0;
+        for (String element : expired) {
+            RedisCheckAndSetResult<String> result = consumer.tryReap(key, inprocesskey, element, now);
+            if (result.committed() && result.value() != null) {
+                ++count;
+            }
+            else if (result.status() == RedisCheckAndSetResult.Status.PRECONDITION_FAILED) {
+                // Only a move that found nothing to do says the element
+                // may be gone; an aborted or failed one is retried next pass.
+                consumer.forget(inprocesskey, element, now);
+            }
+        }
+        reaped += count;
+        return count;
+    }
+
+    public long reaped() {
+        return reaped;
+    }
+
+    public synchronized RedisReliableReaper start(long period) {
+        if (timer != null) {
+            return this;
+        }
+        timer = new Timer("rarefied-redis-reaper", true);
+        timer.schedule(new TimerTask() {
+                @Override public void run() {
+                    try {
+                        // Keep going while whole batches come back, so a
+                        // backlog clears without waiting a period per batch.
+                        while (reap() == batchSize) {
+                        }
+                    }
+                    catch (Exception e) {
+                    }
+                }
+            }, period, period);
+        return this;
+    }
+
+    public synchronized void stop() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.WrongTypeException;
+import org.rarefiedredis.concurrency.IRedisScripter;
+import org.rarefiedredis.concurrency.RedisScript;
+import org.rarefiedredis.concurrency.RedisScriptedCheckAndSet;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public final class RedisReliableScriptedConsumer {
+
+    private RedisScriptedCheckAndSet cas;
+    private RedisScript pop;
+    private RedisScript move;
+    private RedisScript delete;
+
+    public RedisReliableScriptedConsumer(RedisScriptedCheckAndSet cas, RedisScript pop, RedisScript move, RedisScript delete) {
+        this.cas = cas;
+        this.pop = pop;
+        this.move = move;
+        this.delete = delete;
+    }
+
+    public String consume(final String key, final String inprocesskey) throws WrongTypeException {
+        return consume(key, inprocesskey, null);
+    }
+
+    public String consume(final String key, final String inprocesskey, final String element) throws WrongTypeException {
+        if (element == null) {
+            return run(pop, Arrays.asList(key, inprocesskey), Collections.<String>emptyList());
+        }
+        return run(move, Arrays.asList(key, inprocesskey), Arrays.asList(element));
+    }
+
+    public String ack(final String key, final String inprocesskey, final String element) throws WrongTypeException {
+        return run(delete, Arrays.asList(inprocesskey), Arrays.asList(element));
+    }
+
+    public String fail(final String key, final String inprocesskey, final String element) throws WrongTypeException {
+        return run(move, Arrays.asList(inprocesskey, key), Arrays.asList(element));
+    }
+
+    private String run(RedisScript script, List<String> keys, List<String> args) throws WrongTypeException {
+        Object reply;
+        try {
+            reply = cas.checkAndSet(script, keys, args);
+        }
+        catch (Exception e) {
+            if (e.getMessage() != null && e.getMessage().contains("WRONGTYPE")) {
+                throw new WrongTypeException();
+            }
+            return null;
+        }
+        return (reply instanceof String ? (String)reply : null);
+    }
+
+    public static RedisReliableScriptedConsumer StringConsumer(IRedisScripter scripter) {
+        return new RedisReliableScriptedConsumer(new RedisScriptedCheckAndSet(scripter), RedisReliableScripts.STRING_MOVE, RedisReliableScripts.STRING_MOVE, RedisReliableScripts.STRING_DELETE);
+    }
+
+    public static RedisReliableScriptedConsumer ListConsumer(IRedisScripter scripter) {
+        return new RedisReliableScriptedConsumer(new RedisScriptedCheckAndSet(scripter), RedisReliableScripts.LIST_POP_MOVE, RedisReliableScripts.LIST_MOVE, RedisReliableScripts.LIST_DELETE);
+    }
+
+    public static RedisReliableScriptedConsumer SetConsumer(IRedisScripter scripter) {
+        return new RedisReliableScriptedConsumer(new RedisScriptedCheckAndSet(scripter), RedisReliableScripts.SET_MOVE, RedisReliableScripts.SET_MOVE, RedisReliableScripts.SET_DELETE);
+    }
+
+    public static RedisReliableScriptedConsumer SortedSetConsumer(IRedisScripter scripter) {
+        return new RedisReliableScriptedConsumer(new RedisScriptedCheckAndSet(scripter), RedisReliableScripts.SORTED_SET_MOVE, RedisReliableScripts.SORTED_SET_MOVE, RedisReliableScripts.SORTED_SET_DELETE);
+    }
+
+}
@@ -0,0 +1,62 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.WrongTypeException;
+import org.rarefiedredis.concurrency.IRedisScripter;
+import org.rarefiedredis.concurrency.RedisScript;
+import org.rarefiedredis.concurrency.RedisScriptedCheckAndSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class RedisReliableScriptedProducer {
+
+    private RedisScriptedCheckAndSet cas;
+    private RedisScript script;
+    private List<String> prefix;
+
+    public RedisReliableScriptedProducer(RedisScriptedCheckAndSet cas, RedisScript script, String ... prefix) {
+        this.cas = cas;
+        this.script = script;
+        this.prefix = Arrays.asList(prefix);
+    }
+
+    public Object produce(final String key, final String ... productions) throws WrongTypeException {
+        if (productions.length == 0) {
+            return null;
+        }
+        List<String> args = new ArrayList<String>(prefix.size() + productions.length);
+        args.addAll(prefix);
+        args.addAll(Arrays.asList(productions));
+        try {
+            return cas.checkAndSet(script, Arrays.asList(key), args);
+        }
+        catch (Exception e) {
+            if (e.getMessage() != null && e.getMessage().contains("WRONGTYPE")) {
+                throw new WrongTypeException();
+            }
+            return null;
+        }
+    }
+
+    public static RedisReliableScriptedProducer StringProducer(IRedisScripter scripter) {
+        return new RedisReliableScriptedProducer(new RedisScriptedCheckAndSet(scripter), RedisReliableScripts.STRING_SET);
+    }
+
+    public static RedisReliableScriptedProducer ListProducer(IRedisScripter scripter) {
+        return new RedisReliableScriptedProducer(new RedisScriptedCheckAndSet(scripter), RedisReliableScripts.LIST_LPUSH);
+    }
+
+    public static RedisReliableScriptedProducer ListRpushProducer(IRedisScripter scripter) {
+        return new RedisReliableScriptedProducer(new RedisScriptedCheckAndSet(scripter), RedisReliableScripts.LIST_RPUSH);
+    }
+
+    public static RedisReliableScriptedProducer SetProducer(IRedisScripter scripter) {
+        return new RedisReliableScriptedProducer(new RedisScriptedCheckAndSet(scripter), RedisReliableScripts.SET_SADD);
+    }
+
+    public static RedisReliableScriptedProducer BoundedListProducer(IRedisScripter scripter, long bound) {
+        return new RedisReliableScriptedProducer(new RedisScriptedCheckAndSet(scripter), RedisReliableScripts.BOUNDED_LIST_LPUSH, String.valueOf(bound));
+    }
+
+}
@@ -0,0 +1,140 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.concurrency.RedisScript;
+
+public final class RedisReliableScripts {
+
+    private RedisReliableScripts() {
+    }
+
+    private static final String WRONGTYPE =
+        "local function wrongtype(key, expected)\n" +
+        "  local t = redis.call('type', key)\n" +
+        "  if type(t) == 'table' then t = t['ok'] end\n" +
+        "  return t ~= 'none' and t ~= expected\n" +
+        "end\n";
+
+    private static String check(String key, String type) {
+        return "if wrongtype(" + key + ", '" + type + "') then return redis.error_reply('WRONGTYPE Operation against a key holding the wrong kind of value') end\n";
+    }
+
+    // KEYS[1] source, KEYS[2] dest.
+    public static final RedisScript LIST_POP_MOVE = new RedisScript(WRONGTYPE +
+        check("KEYS[1]", "list") +
+        check("KEYS[2]", "list") +
+        "return redis.call('rpoplpush', KEYS[1], KEYS[2])\n");
+
+    // KEYS[1] source, KEYS[2] dest, ARGV[1] element.
+    public static final RedisScript LIST_MOVE = new RedisScript(WRONGTYPE +
+        check("KEYS[1]", "list") +
+        check("KEYS[2]", "list") +
+        "if redis.call('lrem', KEYS[1], 1, ARGV[1]) == 1 then\n" +
+        "  redis.call('lpush', KEYS[2], ARGV[1])\n" +
+        "  return ARGV[1]\n" +
+        "end\n" +
+        "return false\n");
+
+    // KEYS[1] key, ARGV[1] element.
+    public static final RedisScript LIST_DELETE = new RedisScript(WRONGTYPE +
+        check("KEYS[1]", "list") +
+        "if redis.call('lrem', KEYS[1], 1, ARGV[1]) == 1 then return ARGV[1] end\n" +
+        "return false\n");
+
+    // KEYS[1] source, KEYS[2] dest, optional ARGV[1] member.
+    public static final RedisScript SET_MOVE = new RedisScript(WRONGTYPE +
+        check("KEYS[1]", "set") +
+        check("KEYS[2]", "set") +
+        "local member = ARGV[1]\n" +
+        "if not member then member = redis.call('srandmember', KEYS[1]) end\n" +
+        "if not member then return false end\n" +
+        "if redis.call('smove', KEYS[1], KEYS[2], member) == 1 then return member end\n" +
+        "return false\n");
+
+    // KEYS[1] key, ARGV[1] member.
+    public static final RedisScript SET_DELETE = new RedisScript(WRONGTYPE +
+        check("KEYS[1]", "set") +
+        "if redis.call('srem', KEYS[1], ARGV[1]) == 1 then return ARGV[1] end\n" +
+        "return false\n");
+
+    // KEYS[1] source, KEYS[2] dest, optional ARGV[1] member. Without a
+    // member the lowest scored one is moved, keeping its score.
+    public static final RedisScript SORTED_SET_MOVE = new RedisScript(WRONGTYPE +
+        check("KEYS[1]", "zset") +
+        check("KEYS[2]", "zset") +
+        "local member = ARGV[1]\n" +
+        "if not member then\n" +
+        "  local first = redis.call('zrange', KEYS[1], 0, 0)\n" +
+        "  member = first[1]\n" +
+        "end\n" +
+        "if not member then return false end\n" +
+        "local score = redis.call('zscore', KEYS[1], member)\n" +
+        "if not score then return false end\n" +
+        "redis.call('zrem', KEYS[1], member)\n" +
+        "redis.call('zadd', KEYS[2], score, member)\n" +
+        "return member\n");
+
+    // KEYS[1] key, ARGV[1] member.
+    public static final RedisScript SORTED_SET_DELETE = new RedisScript(WRONGTYPE +
+        check("KEYS[1]", "zset") +
+        "if redis.call('zrem', KEYS[1], ARGV[1]) == 1 then return ARGV[1] end\n" +
+        "return false\n");
+
+    // KEYS[1] source, KEYS[2] dest.
+    public static final RedisScript STRING_MOVE = new RedisScript(WRONGTYPE +
+        check("KEYS[1]", "string") +
+        check("KEYS[2]", "string") +
+        "local value = redis.call('get', KEYS[1])\n" +
+        "if not value then return false end\n" +
+        "redis.call('del', KEYS[1])\n" +
+        "redis.call('set', KEYS[2], value)\n" +
+        "return value\n");
+
+    // KEYS[1] key, ARGV[1] expected value.
+    public static final RedisScript STRING_DELETE = new RedisScript(WRONGTYPE +
+        check("KEYS[1]", "string") +
+        "if redis.call('get', KEYS[1]) == ARGV[1] then\n" +
+        "  redis.call('del', KEYS[1])\n" +
+        "  return ARGV[1]\n" +
+        "end\n" +
+        "return false\n");
+
+    private static String push(String command) {
+        return "local n = 0\n" +
+            "for i = 1, #ARGV, 1000 do\n" +
+            "  n = redis.call('" + command + "', KEYS[1], unpack(ARGV, i, math.min(i + 999, #ARGV)))\n" +
+            "end\n" +
+            "return n\n";
+    }
+
+    // KEYS[1] key, ARGV productions.
+    public static final RedisScript LIST_LPUSH = new RedisScript(WRONGTYPE +
+        check("KEYS[1]", "list") +
+        push("lpush"));
+
+    // KEYS[1] key, ARGV productions.
+    public static final RedisScript LIST_RPUSH = new RedisScript(WRONGTYPE +
+        check("KEYS[1]", "list") +
+        push("rpush"));
+
+    // KEYS[1] key, ARGV productions.
+    public static final RedisScript SET_SADD = new RedisScript(WRONGTYPE +
+        check("KEYS[1]", "set") +
+        push("sadd"));
+
+    // KEYS[1] key, ARGV productions. The last production wins.
+    public static final RedisScript STRING_SET = new RedisScript(WRONGTYPE +
+        check("KEYS[1]", "string") +
+        "return redis.call('set', KEYS[1], ARGV[#ARGV])\n");
+
+    // KEYS[1] key, ARGV[1] bound, ARGV[2..] productions.
+    public static final RedisScript BOUNDED_LIST_LPUSH = new RedisScript(WRONGTYPE +
+        check("KEYS[1]", "list") +
+        "local bound = tonumber(ARGV[1])\n" +
+        "local n = 0\n" +
+        "for i = 2, #ARGV, 1000 do\n" +
+        "  n = redis.call('lpush', KEYS[1], unpack(ARGV, i, math.min(i + 999, #ARGV)))\n" +
+        "end\n" +
+        "redis.call('ltrim', KEYS[1], -bound, -1)\n" +
+        "return n\n");
+
+}
@@ -2,7 +2,12 @@ package org.rarefiedredis.reliable;
 
 import org.rarefiedredis.redis.IRedisClient;
 
-public final class RedisReliableSetDeleter implements IRedisReliableDeleter<String> {
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+
+public final class RedisReliableSetDeleter implements IRedisReliableBatchDeleter<String> {
 
     @Override public String type() {
         return "set";
@@ -12,6 +17,9 @@ public final class RedisReliableSetDeleter implements IRedisReliableDeleter<Stri
         try {
             return (client.sismember(key, element) ? element : null);
         }
+        catch (RuntimeException e) {
+            throw e;
+        }
         catch (Exception e) {
             return null;
         }
@@ -25,4 +33,31 @@ public final class RedisReliableSetDeleter implements IRedisReliableDeleter<Stri
         }
         return multi;
     }
+
+    @Override public List<String> verify(IRedisClient client, String key, Collection<String> elements) {
+        try {
+            List<String> found = new ArrayList<String>();
+            for (String element : new LinkedHashSet<String>(elements)) {
+                if (client.sismember(key, element)) {
+                    found.add(element);
+                }
+            }
+            return (found.isEmpty() ? null : found);
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override public IRedisClient multi(IRedisClient multi, String key, List<String> elements) {
+        try {
+            multi.srem(key, elements.get(0), elements.subList(1, elements.size()).toArray(new String[0]));
+        }
+        catch (Exception e) {
+        }
+        return multi;
+    }
 }
@@ -2,7 +2,10 @@ package org.rarefiedredis.reliable;
 
 import org.rarefiedredis.redis.IRedisClient;
 
-public final class RedisReliableSetMover implements IRedisReliableMover<String> {
+import java.util.List;
+import java.util.ArrayList;
+
+public final class RedisReliableSetMover implements IRedisReliableBatchMover<String> {
 
     @Override public String type() {
         return "set";
@@ -12,9 +15,15 @@ public final class RedisReliableSetMover implements IRedisReliableMover<String>
         try {
             if (element == null) {
                 element = client.srandmember(source);
+                if (element == null) {
+                    return null;
+                }
             }
             return (client.sismember(source, element) ? element : null);
         }
+        catch (RuntimeException e) {
+            throw e;
+        }
         catch (Exception e) {
             return null;
         }
@@ -30,4 +39,28 @@ public final class RedisReliableSetMover implements IRedisReliableMover<String>
         return multi;
     }
 
+    @Override public List<String> verify(IRedisClient client, String source, String dest, int maxCount) {
+        try {
+            List<String> members = client.srandmember(source, (long)maxCount);
+            return (members == null || members.isEmpty() ? null : new ArrayList<String>(members));
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override public IRedisClient multi(IRedisClient multi, String source, String dest, List<String> get) {
+        try {
+            for (String member : get) {
+                multi.smove(source, dest, member);
+            }
+        }
+        catch (Exception e) {
+            return null;
+        }
+        return multi;
+    }
 }
@@ -0,0 +1,34 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.IRedisClient;
+
+import java.util.List;
+
+public final class RedisReliableSetProducer implements IRedisReliableBatchProducer<String> {
+
+    @Override public String type() {
+        return "set";
+    }
+
+    @Override public IRedisClient multi(IRedisClient multi, String key, String production) {
+        try {
+            multi.sadd(key, production);
+        }
+        catch (Exception e) {
+        }
+        return multi;
+    }
+
+    @Override public IRedisClient multi(IRedisClient multi, String key, List<String> productions) {
+        if (productions.isEmpty()) {
+            return multi;
+        }
+        try {
+            multi.sadd(key, productions.get(0), productions.subList(1, productions.size()).toArray(new String[0]));
+        }
+        catch (Exception e) {
+        }
+        return multi;
+    }
+
+}
@@ -0,0 +1,106 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.WrongTypeException;
+
+import java.util.Map;
+import java.util.AbstractMap;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Consumes a queue produced by RedisReliableShardedProducer. Each consumer
+// owns the partitions p with p % members == member and polls those first;
+// when they are all empty it steals from the others. Consumed elements
+// come back paired with their partition, which ack and fail need.
+public final class RedisReliableShardedConsumer<T> {
+
+    private RedisReliableConsumer<T> consumer;
+    private int partitions;
+    private int[] owned;
+    private int[] others;
+    private AtomicInteger next;
+    private Random random;
+    private AtomicInteger steals;
+
+    public RedisReliableShardedConsumer(RedisReliableConsumer<T> consumer, int partitions) {
+        this(consumer, partitions, 0, 1);
+    }
+
+    public RedisReliableShardedConsumer(RedisReliableConsumer<T> consumer, int partitions, int member, int members) {
+        if (partitions < 1 || members < 1 || member < 0 || member >= members) {
+            throw new IllegalArgumentException("bad partition assignment");
+        }
+        this.consumer = consumer;
+        this.partitions = partitions;
+        int count = 0;
+        for (int p = 0; p < partitions; ++p) {
+            if (p % members == member) {
+                ++count;
+            }
+        }
+        this.owned = new int[count];
+        this.others = new int[partitions - count];
+        for (int p = 0, o = 0, s = 0; p < partitions; ++p) {
+            if (p % members == member) {
+                owned[o++] = p;
+            }
+            else {
+                others[s++] = p;
+            }
+        }
+        this.next = new AtomicInteger();
+        this.random = new Random();
+        this.steals = new AtomicInteger();
+    }
+
+    public int partitions() {
+        return partitions;
+    }
+
+    public int[] owned() {
+        return owned.clone();
+    }
+
+    public int steals() {
+        return steals.get();
+    }
+
+    public Map.Entry<Integer, T> consume(String key, String inprocesskey) throws WrongTypeException {
+        // Rotate the starting partition so one busy partition cannot starve
+        // the rest.
+        int start = next.getAndIncrement() & 0x7fffffff;
+        for (int i = 0; i < owned.length; ++i) {
+            Map.Entry<Integer, T> consumed = consume(key, inprocesskey, owned[(start + i) % owned.length]);
+            if (consumed != null) {
+                return consumed;
+            }
+        }
+        if (others.length == 0) {
+            return null;
+        }
+        start = random.nextInt(others.length);
+        for (int i = 0; i < others.length; ++i) {
+            Map.Entry<Integer, T> consumed = consume(key, inprocesskey, others[(start + i) % others.length]);
+            if (consumed != null) {
+                steals.incrementAndGet();
+                return consumed;
+            }
+        }
+        return null;
+    }
+
+    public Map.Entry<Integer, T> consume(String key, String inprocesskey, int partition) throws WrongTypeException {
+        T element = consumer.consume(RedisReliableShardedProducer.partition(key, partition), RedisReliableShardedProducer.inprocess(inprocesskey, key, partition));
+        return (element == null ? null : new AbstractMap.SimpleImmutableEntry<Integer, T>(partition, element));
+    }
+
+    public T ack(String key, String inprocesskey, Map.Entry<Integer, T> consumed) throws WrongTypeException {
+        int partition = consumed.getKey();
+        return consumer.ack(RedisReliableShardedProducer.partition(key, partition), RedisReliableShardedProducer.inprocess(inprocesskey, key, partition), consumed.getValue());
+    }
+
+    public T fail(String key, String inprocesskey, Map.Entry<Integer, T> consumed) throws WrongTypeException {
+        int partition = consumed.getKey();
+        return consumer.fail(RedisReliableShardedProducer.partition(key, partition), RedisReliableShardedProducer.inprocess(inprocesskey, key, partition), consumed.getValue());
+    }
+
+}
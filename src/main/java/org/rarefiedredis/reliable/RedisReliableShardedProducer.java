@@ -0,0 +1,87 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.WrongTypeException;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Spreads one logical queue over partitions keys {key:0} .. {key:N-1}.
+// The braces are a cluster hash tag, so an in process key built with
+// inprocess() lands in the same slot as its partition.
+public final class RedisReliableShardedProducer<T> {
+
+    public enum Partitioner {
+        // Each production goes to the partition its hash picks.
+        HASH,
+        // Each call goes, whole, to the next partition in turn.
+        ROUND_ROBIN
+    }
+
+    private RedisReliableProducer<T> producer;
+    private int partitions;
+    private Partitioner partitioner;
+    private AtomicInteger next;
+
+    public RedisReliableShardedProducer(RedisReliableProducer<T> producer, int partitions) {
+        this(producer, partitions, Partitioner.ROUND_ROBIN);
+    }
+
+    public RedisReliableShardedProducer(RedisReliableProducer<T> producer, int partitions, Partitioner partitioner) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("partitions must be positive");
+        }
+        this.producer = producer;
+        this.partitions = partitions;
+        this.partitioner = partitioner;
+        this.next = new AtomicInteger();
+    }
+
+    public static String partition(String key, int partition) {
+        return "{" + key + ":" + partition + "}";
+    }
+
+    public static String inprocess(String inprocesskey, String key, int partition) {
+        return inprocesskey + partition(key, partition);
+    }
+
+    public int partitions() {
+        return partitions;
+    }
+
+    public int partition(T production) {
+        return (production.hashCode() & 0x7fffffff) % partitions;
+    }
+
+    // The EXEC replies, keyed by the partition they were produced to.
+    public Map<Integer, List<Object>> produce(String key, T ... productions) throws WrongTypeException {
+        Map<Integer, List<Object>> replies = new TreeMap<Integer, List<Object>>();
+        if (partitioner == Partitioner.ROUND_ROBIN) {
+            int p = (next.getAndIncrement() & 0x7fffffff) % partitions;
+            replies.put(p, producer.produce(partition(key, p), productions));
+            return replies;
+        }
+        Map<Integer, List<T>> sharded = new TreeMap<Integer, List<T>>();
+        for (T production : productions) {
+            int p = partition(production);
+            List<T> shard = sharded.get(p);
+            if (shard == null) {
+                shard = new ArrayList<T>();
+                sharded.put(p, shard);
+            }
+            shard.add(production);
+        }
+        for (Map.Entry<Integer, List<T>> shard : sharded.entrySet()) {
+            replies.put(shard.getKey(), producer.produce(partition(key, shard.getKey()), toArray(shard.getValue())));
+        }
+        return replies;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T[] toArray(List<T> productions) {
+        return (T[])productions.toArray();
+    }
+
+}
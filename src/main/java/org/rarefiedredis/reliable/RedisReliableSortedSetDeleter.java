@@ -0,0 +1,63 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.IRedisClient;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+
+public final class RedisReliableSortedSetDeleter implements IRedisReliableBatchDeleter<String> {
+
+    @Override public String type() {
+        return "zset";
+    }
+
+    @Override public String verify(IRedisClient client, String key, String element) {
+        try {
+            return (client.zscore(key, element) != null ? element : null);
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override public IRedisClient multi(IRedisClient multi, String key, String element) {
+        try {
+            multi.zrem(key, element);
+        }
+        catch (Exception e) {
+        }
+        return multi;
+    }
+
+    @Override public List<String> verify(IRedisClient client, String key, Collection<String> elements) {
+        try {
+            List<String> found = new ArrayList<String>();
+            for (String element : new LinkedHashSet<String>(elements)) {
+                if (client.zscore(key, element) != null) {
+                    found.add(element);
+                }
+            }
+            return (found.isEmpty() ? null : found);
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override public IRedisClient multi(IRedisClient multi, String key, List<String> elements) {
+        try {
+            multi.zrem(key, elements.get(0), elements.subList(1, elements.size()).toArray(new String[0]));
+        }
+        catch (Exception e) {
+        }
+        return multi;
+    }
+}
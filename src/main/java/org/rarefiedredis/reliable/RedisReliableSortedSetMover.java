@@ -4,10 +4,13 @@ import org.rarefiedredis.redis.IRedisClient;
 import org.rarefiedredis.redis.IRedisSortedSet.ZsetPair;
 
 import java.util.Set;
+import java.util.List;
+import java.util.ArrayList;
 
-public final class RedisReliableSortedSetMover implements IRedisReliableMover<String> {
+public final class RedisReliableSortedSetMover implements IRedisReliableBatchMover<String> {
 
-    private Double score;
+    private ThreadLocal<Double> score = new ThreadLocal<Double>();
+    private ThreadLocal<List<ZsetPair>> pairs = new ThreadLocal<List<ZsetPair>>();
 
     @Override public String type() {
         return "zset";
@@ -17,13 +20,17 @@ public final class RedisReliableSortedSetMover implements IRedisReliableMover<St
         try {
             if (element == null) {
                 Set<ZsetPair> range = client.zrange(source, 0L, 0L);
-                if (range.isEmpty()) {
+                if (range == null || range.isEmpty()) {
                     return null;
                 }
                 element = range.iterator().next().member;
             }
-            score = client.zscore(source, element);
-            return (score != null ? element : null);
+            Double at = client.zscore(source, element);
+            score.set(at);
+            return (at != null ? element : null);
+        }
+        catch (RuntimeException e) {
+            throw e;
         }
         catch (Exception e) {
             return null;
@@ -33,7 +40,7 @@ public final class RedisReliableSortedSetMover implements IRedisReliableMover<St
     @Override public IRedisClient multi(IRedisClient multi, String source, String dest, String get) {
         try {
             multi.zrem(source, get);
-            multi.zadd(dest, new ZsetPair(get, score));
+            multi.zadd(dest, new ZsetPair(get, score.get()));
         }
         catch (Exception e) {
             return null;
@@ -41,4 +48,38 @@ public final class RedisReliableSortedSetMover implements IRedisReliableMover<St
         return multi;
     }
 
+    // The lowest scored members, which keep their scores in dest.
+    @Override public List<String> verify(IRedisClient client, String source, String dest, int maxCount) {
+        try {
+            Set<ZsetPair> range = client.zrange(source, 0L, maxCount - 1L, "withscores");
+            if (range == null || range.isEmpty()) {
+                return null;
+            }
+            List<ZsetPair> found = new ArrayList<ZsetPair>(range);
+            pairs.set(found);
+            List<String> members = new ArrayList<String>(found.size());
+            for (ZsetPair pair : found) {
+                members.add(pair.member);
+            }
+            return members;
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override public IRedisClient multi(IRedisClient multi, String source, String dest, List<String> get) {
+        try {
+            multi.zrem(source, get.get(0), get.subList(1, get.size()).toArray(new String[0]));
+            List<ZsetPair> found = pairs.get();
+            multi.zadd(dest, found.get(0), found.subList(1, found.size()).toArray(new ZsetPair[0]));
+        }
+        catch (Exception e) {
+            return null;
+        }
+        return multi;
+    }
 }
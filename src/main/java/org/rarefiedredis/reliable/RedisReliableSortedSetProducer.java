@@ -0,0 +1,35 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.redis.IRedisClient;
+import org.rarefiedredis.redis.IRedisSortedSet.ZsetPair;
+
+import java.util.List;
+
+public final class RedisReliableSortedSetProducer implements IRedisReliableBatchProducer<ZsetPair> {
+
+    @Override public String type() {
+        return "zset";
+    }
+
+    @Override public IRedisClient multi(IRedisClient multi, String key, ZsetPair production) {
+        try {
+            multi.zadd(key, production);
+        }
+        catch (Exception e) {
+        }
+        return multi;
+    }
+
+    @Override public IRedisClient multi(IRedisClient multi, String key, List<ZsetPair> productions) {
+        if (productions.isEmpty()) {
+            return multi;
+        }
+        try {
+            multi.zadd(key, productions.get(0), productions.subList(1, productions.size()).toArray(new ZsetPair[0]));
+        }
+        catch (Exception e) {
+        }
+        return multi;
+    }
+
+}
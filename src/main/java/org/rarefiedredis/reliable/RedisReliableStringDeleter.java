@@ -12,6 +12,9 @@ public final class RedisReliableStringDeleter implements IRedisReliableDeleter<S
         try {
             return client.get(key);
         }
+        catch (RuntimeException e) {
+            throw e;
+        }
         catch (Exception e) {
             return null;
         }
@@ -12,6 +12,9 @@ public final class RedisReliableStringMover implements IRedisReliableMover<Strin
         try {
             return client.get(source);
         }
+        catch (RuntimeException e) {
+            throw e;
+        }
         catch (Exception e) {
             return null;
         }
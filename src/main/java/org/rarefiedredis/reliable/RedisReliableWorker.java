@@ -0,0 +1,383 @@
+package org.rarefiedredis.reliable;
+
+import org.rarefiedredis.concurrency.RedisExecutors;
+import org.rarefiedredis.concurrency.RedisLatencyHistogram;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs the consume, handle, ack or fail loop for a queue. One fetcher
+// claims up to prefetch elements per transaction into a local buffer,
+// blocking on the queue when it is empty; concurrency handlers take from
+// the buffer; an acker acks handled elements in batches of up to
+// ackBatch. Movers and deleters keep state between verify and multi, so
+// only the fetcher moves (claims and fails) and only the acker deletes.
+// A drain that times out leaves the final flush of each queue to its
+// owner, and fails whatever a late handler finishes.
+// Everything runs on RedisExecutors threads, virtual where the
+// JVM has them.
+public final class RedisReliableWorker<T> {
+
+    private final RedisReliableConsumer<T> consumer;
+    private final String key;
+    private final String inprocesskey;
+    private final IRedisReliableHandler<T> handler;
+    private final int concurrency;
+    private int prefetch;
+    private int ackBatch;
+    private long pollTimeout;
+    private long ackLinger;
+
+    private BlockingQueue<T> buffer;
+    private final ConcurrentLinkedQueue<T> acks;
+    private final ConcurrentLinkedQueue<T> fails;
+    private ExecutorService executor;
+    private CountDownLatch handlers;
+    private CountDownLatch fetcher;
+    private CountDownLatch acker;
+    private volatile boolean fetching;
+    private volatile boolean handling;
+    private volatile boolean acking;
+    private final Object settling;
+    private boolean closed;
+    private AtomicInteger failOwners;
+    private AtomicInteger ackOwners;
+    private long started;
+
+    private final AtomicInteger inFlight;
+    private final AtomicLong handled;
+    private final AtomicLong failed;
+    private final AtomicLong acked;
+    private final AtomicLong errors;
+    private final RedisLatencyHistogram latency;
+
+    public RedisReliableWorker(RedisReliableConsumer<T> consumer, String key, String inprocesskey, IRedisReliableHandler<T> handler, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be positive");
+        }
+        this.consumer = consumer;
+        this.key = key;
+        this.inprocesskey = inprocesskey;
+        this.handler = handler;
+        this.concurrency = concurrency;
+        this.prefetch = concurrency;
+        this.ackBatch = 100;
+        this.pollTimeout = 1000L;
+        this.ackLinger = 5L;
+        this.acks = new ConcurrentLinkedQueue<T>();
+        this.fails = new ConcurrentLinkedQueue<T>();
+        this.settling = new Object();
+        this.inFlight = new AtomicInteger();
+        this.handled = new AtomicLong();
+        this.failed = new AtomicLong();
+        this.acked = new AtomicLong();
+        this.errors = new AtomicLong();
+        this.latency = new RedisLatencyHistogram();
+    }
+
+    // Elements claimed ahead of the handlers, and so the most claimed in
+    // one transaction.
+    public RedisReliableWorker<T> prefetch(int prefetch) {
+        this.prefetch = Math.max(1, prefetch);
+        return this;
+    }
+
+    public RedisReliableWorker<T> ackBatch(int ackBatch) {
+        this.ackBatch = Math.max(1, ackBatch);
+        return this;
+    }
+
+    // How long the fetcher waits on an empty queue before looking again.
+    public RedisReliableWorker<T> pollTimeout(long pollTimeout) {
+        this.pollTimeout = Math.max(1L, pollTimeout);
+        return this;
+    }
+
+    // How long a handled element may wait for its batch ack.
+    public RedisReliableWorker<T> ackLinger(long ackLinger) {
+        this.ackLinger = Math.max(1L, ackLinger);
+        return this;
+    }
+
+    public synchronized RedisReliableWorker<T> start() {
+        if (executor != null) {
+            throw new IllegalStateException("worker already started");
+        }
+        buffer = new LinkedBlockingQueue<T>(prefetch);
+        executor = RedisExecutors.newExecutor("rarefied-redis-worker");
+        handlers = new CountDownLatch(concurrency);
+        fetcher = new CountDownLatch(1);
+        acker = new CountDownLatch(1);
+        fetching = handling = acking = true;
+        closed = false;
+        failOwners = new AtomicInteger(2);
+        ackOwners = new AtomicInteger(2);
+        started = System.nanoTime();
+        executor.execute(new Runnable() {
+                @Override public void run() {
+                    try {
+                        fetch();
+                    }
+                    finally {
+                        if (release(failOwners)) {
+                            closeFails();
+                        }
+                        fetcher.countDown();
+                    }
+                }
+            });
+        for (int i = 0; i < concurrency; ++i) {
+            executor.execute(new Runnable() {
+                    @Override public void run() {
+                        try {
+                            handle();
+                        }
+                        finally {
+                            handlers.countDown();
+                        }
+                    }
+                });
+        }
+        executor.execute(new Runnable() {
+                @Override public void run() {
+                    try {
+                        ack();
+                    }
+                    finally {
+                        if (release(ackOwners)) {
+                            flushAcks();
+                        }
+                        acker.countDown();
+                    }
+                }
+            });
+        return this;
+    }
+
+    // Stops claiming, lets the handlers finish what was already claimed
+    // and acks it. Whatever is still buffered when the timeout runs out is
+    // failed back onto the queue, as is anything a handler finishes after
+    // that. True when everything finished in time.
+    public boolean drain(long timeout, TimeUnit unit) throws InterruptedException {
+        if (executor == null) {
+            return true;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        fetching = false;
+        boolean fetched = fetcher.await(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        handling = false;
+        boolean drained = handlers.await(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        acking = false;
+        boolean flushed = acker.await(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        synchronized (settling) {
+            closed = true;
+        }
+        // Whichever of this thread and the owner lets go last flushes, so
+        // a fetcher or acker still running keeps its queue to itself.
+        if (release(failOwners)) {
+            closeFails();
+        }
+        if (release(ackOwners)) {
+            flushAcks();
+        }
+        executor.shutdown();
+        return fetched && drained && flushed && inFlight.get() == 0;
+    }
+
+    private void fetch() {
+        // Once a wait has come back empty the batch claim is skipped: the
+        // blocking consume only probes an idle queue, where the batch claim
+        // would run a transaction every time around.
+        boolean idle = false;
+        while (fetching) {
+            flushFails();
+            try {
+                int room = buffer.remainingCapacity();
+                if (room == 0) {
+                    Thread.sleep(1L);
+                    continue;
+                }
+                List<T> claimed = (idle ? Collections.<T>emptyList() : consumer.consume(key, inprocesskey, room));
+                if (claimed.isEmpty()) {
+                    T element = consumer.consume(key, inprocesskey, pollTimeout, TimeUnit.MILLISECONDS);
+                    idle = (element == null);
+                    if (element != null) {
+                        buffer.put(element);
+                    }
+                    continue;
+                }
+                for (T element : claimed) {
+                    buffer.put(element);
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (Exception e) {
+                errors.incrementAndGet();
+                if (!sleep(pollTimeout)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void handle() {
+        while (handling || !buffer.isEmpty()) {
+            T element;
+            try {
+                element = buffer.poll(10L, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (element == null) {
+                continue;
+            }
+            inFlight.incrementAndGet();
+            long start = System.nanoTime();
+            try {
+                handler.handle(element);
+                handled.incrementAndGet();
+                settle(acks, element);
+            }
+            catch (Exception e) {
+                failed.incrementAndGet();
+                settle(fails, element);
+            }
+            finally {
+                latency.record(System.nanoTime() - start);
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    // Once drain has closed the queues nothing flushes them any more, so
+    // an element finished after that is failed back onto the queue here
+    // rather than left in process.
+    private void settle(ConcurrentLinkedQueue<T> queue, T element) {
+        synchronized (settling) {
+            if (!closed) {
+                queue.offer(element);
+                return;
+            }
+        }
+        try {
+            consumer.fail(key, inprocesskey, element);
+        }
+        catch (Exception e) {
+            errors.incrementAndGet();
+        }
+    }
+
+    private boolean release(AtomicInteger owners) {
+        return owners.decrementAndGet() == 0;
+    }
+
+    private void ack() {
+        while (acking && sleep(ackLinger)) {
+            flushAcks();
+        }
+    }
+
+    private void flushAcks() {
+        while (!acks.isEmpty()) {
+            List<T> batch = new ArrayList<T>(ackBatch);
+            T element;
+            while (batch.size() < ackBatch && (element = acks.poll()) != null) {
+                batch.add(element);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                acked.addAndGet(consumer.ack(key, inprocesskey, batch).size());
+            }
+            catch (Exception e) {
+                // Left in the in process structure for recovery.
+                errors.incrementAndGet();
+            }
+        }
+    }
+
+    private void closeFails() {
+        T element;
+        while ((element = buffer.poll()) != null) {
+            fails.offer(element);
+        }
+        flushFails();
+    }
+
+    private void flushFails() {
+        T element;
+        while ((element = fails.poll()) != null) {
+            try {
+                consumer.fail(key, inprocesskey, element);
+            }
+            catch (Exception e) {
+                errors.incrementAndGet();
+            }
+        }
+    }
+
+    private boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public int buffered() {
+        return (buffer == null ? 0 : buffer.size());
+    }
+
+    public long handled() {
+        return handled.get();
+    }
+
+    public long failed() {
+        return failed.get();
+    }
+
+    public long acked() {
+        return acked.get();
+    }
+
+    public long errors() {
+        return errors.get();
+    }
+
+    // Handled elements per second since start.
+    public double throughput() {
+        if (executor == null) {
+            return 0d;
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        return (seconds <= 0d ? 0d : handled.get() / seconds);
+    }
+
+    // Handler latency in nanoseconds.
+    public RedisLatencyHistogram latency() {
+        return latency;
+    }
+
+}
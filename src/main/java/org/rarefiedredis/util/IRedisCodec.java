@@ -0,0 +1,9 @@
+package org.rarefiedredis.util;
+
+public interface IRedisCodec<T> {
+
+    String encode(T value);
+
+    T decode(String encoded);
+
+}
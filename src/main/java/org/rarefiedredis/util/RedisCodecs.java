@@ -0,0 +1,47 @@
+package org.rarefiedredis.util;
+
+import java.nio.charset.Charset;
+
+// Built in codecs. IRedisClient only carries strings, so bytes travel as
+// ISO-8859-1 text, one char per byte, which round trips losslessly.
+public final class RedisCodecs {
+
+    public static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+    public static final Charset UTF8 = Charset.forName("UTF-8");
+
+    public static final IRedisCodec<String> STRING = new IRedisCodec<String>() {
+        @Override public String encode(String value) {
+            return value;
+        }
+        @Override public String decode(String encoded) {
+            return encoded;
+        }
+    };
+
+    // Base 36, so large ids take a few chars less than in decimal.
+    public static final IRedisCodec<Long> LONG = new IRedisCodec<Long>() {
+        @Override public String encode(Long value) {
+            return Long.toString(value, Character.MAX_RADIX);
+        }
+        @Override public Long decode(String encoded) {
+            return Long.parseLong(encoded, Character.MAX_RADIX);
+        }
+    };
+
+    public static final IRedisCodec<byte[]> BYTES = new IRedisCodec<byte[]>() {
+        @Override public String encode(byte[] value) {
+            return new String(value, LATIN1);
+        }
+        @Override public byte[] decode(String encoded) {
+            return encoded.getBytes(LATIN1);
+        }
+    };
+
+    private RedisCodecs() {
+    }
+
+    public static <T> IRedisCodec<T> compressed(IRedisCodec<T> codec, int threshold) {
+        return new RedisCompressingCodec<T>(codec, threshold);
+    }
+
+}
@@ -0,0 +1,112 @@
+package org.rarefiedredis.util;
+
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.DataFormatException;
+
+// Deflates what another codec encodes once it reaches threshold chars and
+// deflating actually saves space. The first char of every encoding says
+// which: RAW or DEFLATED. Deflaters, inflaters and their buffers are kept
+// per thread and reused. Encoding is deterministic, so an element can be
+// encoded again to ack it.
+public final class RedisCompressingCodec<T> implements IRedisCodec<T> {
+
+    public static final char RAW = 'r';
+    public static final char DEFLATED = 'z';
+
+    private static final class Buffers {
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final Inflater inflater = new Inflater(true);
+        private byte[] in = new byte[4096];
+        private byte[] out = new byte[4096];
+    }
+
+    private static final ThreadLocal<Buffers> BUFFERS = new ThreadLocal<Buffers>() {
+        @Override protected Buffers initialValue() {
+            return new Buffers();
+        }
+    };
+
+    private final IRedisCodec<T> codec;
+    private final int threshold;
+
+    public RedisCompressingCodec(IRedisCodec<T> codec, int threshold) {
+        this.codec = codec;
+        this.threshold = threshold;
+    }
+
+    @Override public String encode(T value) {
+        String encoded = codec.encode(value);
+        if (encoded.length() < threshold) {
+            return RAW + encoded;
+        }
+        Buffers buffers = BUFFERS.get();
+        byte[] bytes = encoded.getBytes(RedisCodecs.UTF8);
+        Deflater deflater = buffers.deflater;
+        deflater.reset();
+        deflater.setInput(bytes);
+        deflater.finish();
+        int n = 0;
+        while (!deflater.finished()) {
+            if (n == buffers.out.length) {
+                buffers.out = grow(buffers.out);
+            }
+            n += deflater.deflate(buffers.out, n, buffers.out.length - n);
+            if (n >= bytes.length) {
+                return RAW + encoded;
+            }
+        }
+        StringBuilder deflated = new StringBuilder(n + 1);
+        deflated.append(DEFLATED);
+        for (int i = 0; i < n; ++i) {
+            deflated.append((char)(buffers.out[i] & 0xff));
+        }
+        return deflated.toString();
+    }
+
+    @Override public T decode(String encoded) {
+        if (encoded == null || encoded.length() == 0) {
+            return null;
+        }
+        if (encoded.charAt(0) != DEFLATED) {
+            return codec.decode(encoded.substring(1));
+        }
+        Buffers buffers = BUFFERS.get();
+        int length = encoded.length() - 1;
+        while (buffers.in.length < length + 1) {
+            buffers.in = grow(buffers.in);
+        }
+        for (int i = 0; i < length; ++i) {
+            buffers.in[i] = (byte)encoded.charAt(i + 1);
+        }
+        // A raw inflater may want one byte past the end of the stream.
+        buffers.in[length] = 0;
+        Inflater inflater = buffers.inflater;
+        inflater.reset();
+        inflater.setInput(buffers.in, 0, length + 1);
+        int n = 0;
+        try {
+            while (!inflater.finished()) {
+                if (n == buffers.out.length) {
+                    buffers.out = grow(buffers.out);
+                }
+                int inflated = inflater.inflate(buffers.out, n, buffers.out.length - n);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += inflated;
+            }
+        }
+        catch (DataFormatException e) {
+            throw new IllegalArgumentException("corrupt deflated value", e);
+        }
+        return codec.decode(new String(buffers.out, 0, n, RedisCodecs.UTF8));
+    }
+
+    private static byte[] grow(byte[] buffer) {
+        byte[] grown = new byte[buffer.length * 2];
+        System.arraycopy(buffer, 0, grown, 0, buffer.length);
+        return grown;
+    }
+
+}
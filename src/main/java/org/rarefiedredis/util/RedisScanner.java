@@ -6,22 +6,36 @@ import org.rarefiedredis.redis.WrongTypeException;
 public final class RedisScanner {
 
     private IRedisClient client;
+    private RedisTypeCache typeCache;
 
     public RedisScanner(IRedisClient client) {
         this.client = client;
     }
 
+    // Skips the TYPE round trip for keys whose type is cached.
+    public RedisScanner typeCache(RedisTypeCache typeCache) {
+        this.typeCache = typeCache;
+        return this;
+    }
+
+    public RedisTypeCache typeCache() {
+        return typeCache;
+    }
+
     public <T> RedisScanner scan(final IRedisScanner<T> scanner, final String key, final String ... options) throws WrongTypeException {
         String type = scanner.type();
         String t = "none";
         if (key != null && type != null) {
             try {
-                t = client.type(key);
+                t = (typeCache == null ? client.type(key) : typeCache.type(client, key));
             }
             catch (Exception e) {
                 return this;
             }
             if (!t.equals("none") && !t.equals(type)) {
+                if (typeCache != null) {
+                    typeCache.invalidate(key);
+                }
                 throw new WrongTypeException();
             }
         }
@@ -0,0 +1,125 @@
+package org.rarefiedredis.util;
+
+import org.rarefiedredis.redis.IRedisClient;
+import org.rarefiedredis.redis.WrongTypeException;
+import org.rarefiedredis.redis.NotImplementedException;
+
+import java.util.Map;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Remembers the types of keys that are not expected to change type, so
+// that a TYPE round trip is only made on a miss. Entries expire after the
+// ttl and the least recently used entry is dropped past the size limit.
+// Callers invalidate a key when they see it missing or of another type.
+public final class RedisTypeCache {
+
+    private static final class CachedType {
+        private final String type;
+        private final long expires;
+
+        public CachedType(String type, long expires) {
+            this.type = type;
+            this.expires = expires;
+        }
+    }
+
+    private final Map<String, CachedType> types;
+    private final long ttl;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong invalidations;
+
+    public RedisTypeCache() {
+        this(1024, 60000L);
+    }
+
+    public RedisTypeCache(final int maxSize, long ttl) {
+        this.types = new LinkedHashMap<String, CachedType>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<String, CachedType> eldest) {
+                return size() > maxSize;
+            }
+        };
+        this.ttl = ttl;
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.invalidations = new AtomicLong();
+    }
+
+    // The cached type of key, or null when it is not cached.
+    public String get(String key) {
+        synchronized (types) {
+            CachedType entry = types.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expires <= System.currentTimeMillis()) {
+                types.remove(key);
+                return null;
+            }
+            return entry.type;
+        }
+    }
+
+    public void put(String key, String type) {
+        if (type == null || type.equals("none")) {
+            invalidate(key);
+            return;
+        }
+        synchronized (types) {
+            types.put(key, new CachedType(type, System.currentTimeMillis() + ttl));
+        }
+    }
+
+    public void invalidate(String key) {
+        synchronized (types) {
+            if (types.remove(key) != null) {
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (types) {
+            types.clear();
+        }
+    }
+
+    // The type of key, from the cache or else from the server. A missing
+    // key is not cached.
+    public String type(IRedisClient client, String key) throws WrongTypeException, NotImplementedException {
+        String type = get(key);
+        if (type != null) {
+            hits.incrementAndGet();
+            return type;
+        }
+        misses.incrementAndGet();
+        type = client.type(key);
+        put(key, type);
+        return type;
+    }
+
+    public int size() {
+        synchronized (types) {
+            return types.size();
+        }
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public long invalidations() {
+        return invalidations.get();
+    }
+
+    public double hitRate() {
+        long h = hits.get(), m = misses.get();
+        return (h + m == 0L ? 0.0 : (double)h / (double)(h + m));
+    }
+
+}
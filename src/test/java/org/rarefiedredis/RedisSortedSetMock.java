@@ -0,0 +1,353 @@
+package org.rarefiedredis;
+
+import org.rarefiedredis.redis.IRedisClient;
+import org.rarefiedredis.redis.IRedisSortedSet.ZsetPair;
+import org.rarefiedredis.redis.WrongTypeException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.LinkedHashSet;
+import java.util.Comparator;
+import java.util.Collections;
+
+// Sorted sets for tests that run against RedisMock, which does not
+// implement them yet. Wraps any client: ZADD, ZREM, ZSCORE, ZCARD, ZRANGE
+// and ZRANGEBYSCORE are served in memory, TYPE, EXISTS and DEL see those
+// keys too, and everything else goes to the wrapped client. Sorted set
+// keys are watched on their own, so a transaction over several of them
+// aborts when any one changes, and MULTI queues sorted set commands
+// alongside the wrapped client's.
+public final class RedisSortedSetMock implements InvocationHandler {
+
+    private static final class Zsets {
+        private Map<String, Map<String, Double>> sets = new HashMap<String, Map<String, Double>>();
+        private Map<String, Long> versions = new HashMap<String, Long>();
+
+        private long version(String key) {
+            Long version = versions.get(key);
+            return (version == null ? 0L : version);
+        }
+
+        private void touch(String key) {
+            versions.put(key, version(key) + 1L);
+        }
+    }
+
+    private static final Comparator<ZsetPair> ORDER = new Comparator<ZsetPair>() {
+        @Override public int compare(ZsetPair a, ZsetPair b) {
+            int c = a.score.compareTo(b.score);
+            return (c != 0 ? c : a.member.compareTo(b.member));
+        }
+    };
+
+    private static final Set<String> COMMANDS = new LinkedHashSet<String>(Arrays.asList("zadd", "zrem", "zscore", "zcard", "zrange", "zrangebyscore"));
+
+    private IRedisClient client;
+    private Zsets zsets;
+    private RedisSortedSetMock parent;
+    private Map<String, Long> watched;
+    private List<Object[]> queued;
+
+    private RedisSortedSetMock(IRedisClient client, Zsets zsets, RedisSortedSetMock parent) {
+        this.client = client;
+        this.zsets = zsets;
+        this.parent = parent;
+        this.watched = new HashMap<String, Long>();
+        this.queued = (parent == null ? null : new ArrayList<Object[]>());
+    }
+
+    public static IRedisClient wrap(IRedisClient client) {
+        return proxy(new RedisSortedSetMock(client, new Zsets(), null));
+    }
+
+    private static IRedisClient proxy(RedisSortedSetMock handler) {
+        return (IRedisClient)Proxy.newProxyInstance(IRedisClient.class.getClassLoader(), new Class<?>[] { IRedisClient.class }, handler);
+    }
+
+    @Override public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        List<Object> flat = flatten(args);
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(this, args);
+        }
+        if (name.equals("createClient")) {
+            return proxy(new RedisSortedSetMock(client.createClient(), zsets, null));
+        }
+        if (name.equals("multi")) {
+            return proxy(new RedisSortedSetMock(client.multi(), zsets, this));
+        }
+        if (name.equals("watch")) {
+            synchronized (zsets) {
+                for (Object key : flat) {
+                    watched.put((String)key, zsets.version((String)key));
+                }
+            }
+            return delegate(method, args);
+        }
+        if (name.equals("unwatch")) {
+            watched.clear();
+            return delegate(method, args);
+        }
+        if (queued != null) {
+            return queue(name, method, args, flat);
+        }
+        synchronized (zsets) {
+            if (COMMANDS.contains(name)) {
+                checkType((String)flat.get(0));
+                return zset(name, flat);
+            }
+            if (name.equals("type") && zsets.sets.containsKey(flat.get(0))) {
+                return "zset";
+            }
+            if (name.equals("exists") && zsets.sets.containsKey(flat.get(0))) {
+                return Boolean.TRUE;
+            }
+            if (name.equals("del")) {
+                return (Long)delegate(method, args) + del(flat);
+            }
+        }
+        return delegate(method, args);
+    }
+
+    private Object queue(String name, Method method, Object[] args, List<Object> flat) throws Throwable {
+        if (name.equals("discard")) {
+            queued.clear();
+            parent.watched.clear();
+            return delegate(method, args);
+        }
+        if (name.equals("exec")) {
+            return exec(method, args);
+        }
+        if (COMMANDS.contains(name)) {
+            queued.add(new Object[] { name, flat });
+            return null;
+        }
+        if (name.equals("del")) {
+            queued.add(new Object[] { name, flat });
+        }
+        else {
+            queued.add(new Object[] { null, null });
+        }
+        return delegate(method, args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object exec(Method method, Object[] args) throws Throwable {
+        synchronized (zsets) {
+            try {
+                for (Map.Entry<String, Long> watch : parent.watched.entrySet()) {
+                    if (zsets.version(watch.getKey()) != watch.getValue()) {
+                        client.discard();
+                        return null;
+                    }
+                }
+                List<Object> replies = (List<Object>)delegate(method, args);
+                if (replies == null) {
+                    return null;
+                }
+                List<Object> merged = new ArrayList<Object>(queued.size());
+                int at = 0;
+                for (Object[] command : queued) {
+                    String name = (String)command[0];
+                    List<Object> flat = (List<Object>)command[1];
+                    try {
+                        if (name == null) {
+                            merged.add(replies.get(at++));
+                        }
+                        else if (name.equals("del")) {
+                            merged.add((Long)replies.get(at++) + del(flat));
+                        }
+                        else {
+                            checkType((String)flat.get(0));
+                            merged.add(zset(name, flat));
+                        }
+                    }
+                    catch (Exception e) {
+                        merged.add(e);
+                    }
+                }
+                return merged;
+            }
+            finally {
+                queued.clear();
+                parent.watched.clear();
+            }
+        }
+    }
+
+    private Object delegate(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(client, args);
+        }
+        catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void checkType(String key) throws Exception {
+        if (zsets.sets.containsKey(key)) {
+            return;
+        }
+        String type = client.type(key);
+        if (type != null && !type.equals("none")) {
+            throw new WrongTypeException();
+        }
+    }
+
+    private long del(List<Object> keys) {
+        long deleted = 0L;
+        for (Object key : keys) {
+            if (zsets.sets.remove(key) != null) {
+                zsets.touch((String)key);
+                ++deleted;
+            }
+        }
+        return deleted;
+    }
+
+    private Object zset(String name, List<Object> flat) {
+        String key = (String)flat.get(0);
+        Map<String, Double> set = zsets.sets.get(key);
+        if (name.equals("zadd")) {
+            if (set == null) {
+                set = new HashMap<String, Double>();
+                zsets.sets.put(key, set);
+            }
+            long added = 0L;
+            for (Object pair : flat.subList(1, flat.size())) {
+                if (set.put(((ZsetPair)pair).member, ((ZsetPair)pair).score) == null) {
+                    ++added;
+                }
+            }
+            zsets.touch(key);
+            return added;
+        }
+        if (name.equals("zrem")) {
+            long removed = 0L;
+            for (Object member : flat.subList(1, flat.size())) {
+                if (set != null && set.remove(member) != null) {
+                    ++removed;
+                }
+            }
+            if (removed > 0L) {
+                if (set.isEmpty()) {
+                    zsets.sets.remove(key);
+                }
+                zsets.touch(key);
+            }
+            return removed;
+        }
+        if (name.equals("zscore")) {
+            return (set == null ? null : set.get(flat.get(1)));
+        }
+        if (name.equals("zcard")) {
+            return (set == null ? 0L : (long)set.size());
+        }
+        List<ZsetPair> sorted = sorted(set);
+        List<String> options = new ArrayList<String>();
+        List<ZsetPair> range;
+        if (name.equals("zrange")) {
+            long size = sorted.size();
+            long start = ((Number)flat.get(1)).longValue();
+            long stop = ((Number)flat.get(2)).longValue();
+            start = Math.max(0L, (start < 0L ? size + start : start));
+            stop = Math.min(size - 1L, (stop < 0L ? size + stop : stop));
+            range = (start > stop ? new ArrayList<ZsetPair>() : sorted.subList((int)start, (int)stop + 1));
+            for (Object option : flat.subList(3, flat.size())) {
+                options.add(((String)option).toLowerCase());
+            }
+        }
+        else {
+            String min = (String)flat.get(1), max = (String)flat.get(2);
+            range = new ArrayList<ZsetPair>();
+            for (ZsetPair pair : sorted) {
+                if (above(pair.score, min) && below(pair.score, max)) {
+                    range.add(pair);
+                }
+            }
+            for (Object option : flat.subList(3, flat.size())) {
+                options.add(((String)option).toLowerCase());
+            }
+            int limit = options.indexOf("limit");
+            if (limit != -1) {
+                int offset = Integer.parseInt(options.get(limit + 1));
+                int count = Integer.parseInt(options.get(limit + 2));
+                int from = Math.min(offset, range.size());
+                int to = (count < 0 ? range.size() : Math.min(range.size(), from + count));
+                range = range.subList(from, to);
+            }
+        }
+        boolean scores = options.contains("withscores");
+        Set<ZsetPair> result = new LinkedHashSet<ZsetPair>();
+        for (ZsetPair pair : range) {
+            result.add(new ZsetPair(pair.member, (scores ? pair.score : null)));
+        }
+        return result;
+    }
+
+    private static List<ZsetPair> sorted(Map<String, Double> set) {
+        List<ZsetPair> sorted = new ArrayList<ZsetPair>();
+        if (set != null) {
+            for (Map.Entry<String, Double> entry : set.entrySet()) {
+                sorted.add(new ZsetPair(entry.getKey(), entry.getValue()));
+            }
+        }
+        Collections.sort(sorted, ORDER);
+        return sorted;
+    }
+
+    private static boolean above(double score, String min) {
+        if (min.equals("-inf")) {
+            return true;
+        }
+        if (min.startsWith("(")) {
+            return score > bound(min.substring(1));
+        }
+        return score >= bound(min);
+    }
+
+    private static boolean below(double score, String max) {
+        if (max.equals("+inf") || max.equals("inf")) {
+            return true;
+        }
+        if (max.startsWith("(")) {
+            return score < bound(max.substring(1));
+        }
+        return score <= bound(max);
+    }
+
+    private static double bound(String bound) {
+        if (bound.equals("-inf")) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if (bound.equals("+inf") || bound.equals("inf")) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Double.parseDouble(bound);
+    }
+
+    private static List<Object> flatten(Object[] args) {
+        List<Object> flat = new ArrayList<Object>();
+        if (args == null) {
+            return flat;
+        }
+        for (Object arg : args) {
+            if (arg instanceof Object[]) {
+                flat.addAll(Arrays.asList((Object[])arg));
+            }
+            else {
+                flat.add(arg);
+            }
+        }
+        return flat;
+    }
+
+}
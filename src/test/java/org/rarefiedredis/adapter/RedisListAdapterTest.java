@@ -61,6 +61,21 @@ public class RedisListAdapterTest {
         assertEquals(false, true);
     }
 
+    @Test public void indexOfShouldReturnTheIndexOfAnElementPastTheFirstRange() {
+        String k = rander.randkey();
+        RedisListAdapter adapter = new RedisListAdapter(client, k);
+        try {
+            for (int i = 0; i < 25; ++i) {
+                client.rpush(k, "v" + i);
+            }
+            assertEquals(12, adapter.indexOf("v12"));
+            assertEquals(24, adapter.indexOf("v24"));
+        }
+        catch (Exception e) {
+            assertEquals(false, true);
+        }
+    }
+
     @Test public void indexOfShouldReturnTheIndexOfTheElementInTheList() {
         String k = rander.randkey();
         String v = "v", v2 = "v2", v3 = "v3", v4 = "v2", v5 = "v5";
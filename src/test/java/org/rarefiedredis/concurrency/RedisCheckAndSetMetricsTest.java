@@ -0,0 +1,126 @@
+package org.rarefiedredis.concurrency;
+
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.Ignore;
+import static org.junit.Assert.assertEquals;
+
+import org.rarefiedredis.RandomKey;
+import org.rarefiedredis.redis.RedisMock;
+import org.rarefiedredis.redis.IRedisClient;
+import org.rarefiedredis.redis.WrongTypeException;
+import org.rarefiedredis.redis.NotImplementedException;
+import org.rarefiedredis.redis.SyntaxErrorException;
+import org.rarefiedredis.redis.adapter.jedis.JedisIRedisClient;
+
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.List;
+
+public class RedisCheckAndSetMetricsTest {
+
+    private IRedisClient client, other;
+    private RandomKey rander;
+
+    @Before public void initClient() {
+        rander = new RandomKey();
+        String integration = System.getProperty("integration");
+        if (integration != null && integration.equals("true")) {
+            client = new JedisIRedisClient(new JedisPool(new JedisPoolConfig(), "localhost"));
+            other = new JedisIRedisClient(new JedisPool(new JedisPoolConfig(), "localhost"));
+        }
+        else {
+            RedisMock mock = new RedisMock();
+            client = mock.createClient();
+            other = mock.createClient();
+        }
+    }
+
+    private IRedisCheckAndSet<String> setter(final boolean conflict) {
+        return new IRedisCheckAndSet<String>() {
+            @Override public String get(IRedisClient client, String key) {
+                return key;
+            }
+            @Override public IRedisClient set(IRedisClient multi, String key, String get) {
+                try {
+                    if (conflict) {
+                        other.set(key, rander.randkey());
+                    }
+                    multi.set(key, get);
+                }
+                catch (Exception e) {
+                }
+                return multi;
+            }
+        };
+    }
+
+    @Test public void histogramShouldReportPercentilesWithinItsPrecision() {
+        RedisLatencyHistogram histogram = new RedisLatencyHistogram();
+        for (long v = 1L; v <= 1000L; ++v) {
+            histogram.record(v * 1000L);
+        }
+        assertEquals(1000L, histogram.count());
+        assertEquals(1000000L, histogram.max());
+        long p50 = histogram.percentile(50d);
+        long p99 = histogram.percentile(99d);
+        assertEquals(true, p50 >= 500000L && p50 <= 500000L + 500000L / 32L);
+        assertEquals(true, p99 >= 990000L && p99 <= 990000L + 990000L / 32L);
+        histogram.reset();
+        assertEquals(0L, histogram.count());
+        histogram.record(3L);
+        assertEquals(3L, histogram.percentile(100d));
+    }
+
+    @Test public void metricsShouldCountCommitsAbortsAndHotKeys() throws WrongTypeException, NotImplementedException, SyntaxErrorException {
+        RedisCheckAndSetMetrics metrics = new RedisCheckAndSetMetrics(4, 1, 16, 1);
+        RedisCheckAndSet cas = new RedisCheckAndSet(client, new RedisCheckAndSetRetryPolicy(2, 0L, 0L, 0L)).listener(metrics);
+        String hot = rander.randkey(), cold = rander.randkey();
+        assertEquals(true, cas.checkAndSet(setter(false), hot) != null);
+        assertEquals(true, cas.checkAndSet(setter(false), hot) != null);
+        assertEquals(true, cas.checkAndSet(setter(false), hot) != null);
+        assertEquals(true, cas.checkAndSet(setter(false), cold) != null);
+        assertEquals(null, cas.checkAndSet(setter(true), cold));
+        RedisCheckAndSetMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(4L, snapshot.committed);
+        assertEquals(1L, snapshot.aborted);
+        assertEquals(0L, snapshot.errors);
+        assertEquals(2L, snapshot.watchAborts);
+        assertEquals(4L, snapshot.attempts[0]);
+        assertEquals(1L, snapshot.attempts[1]);
+        assertEquals(1, snapshot.hotKeys.size());
+        assertEquals(hot, snapshot.hotKeys.get(0).getKey());
+        assertEquals(3L, (long)snapshot.hotKeys.get(0).getValue());
+        assertEquals(6L, metrics.watch().count());
+        assertEquals(5L, metrics.latency().count());
+    }
+
+    @Test public void metricsShouldCountFailedPreconditionsAndReadErrorsApartFromCommits() throws WrongTypeException, NotImplementedException, SyntaxErrorException {
+        RedisCheckAndSetMetrics metrics = new RedisCheckAndSetMetrics();
+        RedisCheckAndSet cas = new RedisCheckAndSet(client).listener(metrics);
+        RedisCheckAndSetResult<String> result = cas.tryCheckAndSet(new IRedisCheckAndSet<String>() {
+                @Override public String get(IRedisClient client, String key) {
+                    return null;
+                }
+                @Override public IRedisClient set(IRedisClient multi, String key, String get) {
+                    return multi;
+                }
+            }, rander.randkey());
+        assertEquals(RedisCheckAndSetResult.Status.PRECONDITION_FAILED, result.status());
+        result = cas.tryCheckAndSet(new IRedisCheckAndSet<String>() {
+                @Override public String get(IRedisClient client, String key) {
+                    throw new IllegalStateException("connection lost");
+                }
+                @Override public IRedisClient set(IRedisClient multi, String key, String get) {
+                    return multi;
+                }
+            }, rander.randkey());
+        assertEquals(RedisCheckAndSetResult.Status.ERROR, result.status());
+        RedisCheckAndSetMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(0L, snapshot.committed);
+        assertEquals(1L, snapshot.preconditionFailed);
+        assertEquals(1L, snapshot.errors);
+    }
+
+}
@@ -0,0 +1,116 @@
+package org.rarefiedredis.concurrency;
+
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.Ignore;
+import static org.junit.Assert.assertEquals;
+
+import org.rarefiedredis.RandomKey;
+import org.rarefiedredis.redis.RedisMock;
+import org.rarefiedredis.redis.IRedisClient;
+import org.rarefiedredis.redis.WrongTypeException;
+import org.rarefiedredis.redis.NotImplementedException;
+import org.rarefiedredis.redis.SyntaxErrorException;
+import org.rarefiedredis.redis.adapter.jedis.JedisIRedisClient;
+
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class RedisCheckAndSetPoolTest {
+
+    private IRedisClient client;
+    private RandomKey rander;
+
+    @Before public void initClient() {
+        rander = new RandomKey();
+        String integration = System.getProperty("integration");
+        if (integration != null && integration.equals("true")) {
+            client = new JedisIRedisClient(new JedisPool(new JedisPoolConfig(), "localhost"));
+        }
+        else {
+            client = new RedisMock();
+        }
+    }
+
+    private IRedisCheckAndSet<String> setter(final String v) {
+        return new IRedisCheckAndSet<String>() {
+            @Override public String get(IRedisClient client, String key) {
+                try {
+                    return client.get(key);
+                }
+                catch (Exception e) {
+                    return null;
+                }
+            }
+            @Override public IRedisClient set(IRedisClient multi, String key, String get) {
+                try {
+                    multi.set(key, v);
+                }
+                catch (Exception e) {
+                }
+                return multi;
+            }
+        };
+    }
+
+    @Test public void poolShouldReuseTransactionConnections() throws WrongTypeException, NotImplementedException, SyntaxErrorException {
+        RedisCheckAndSetPool pool = new RedisCheckAndSetPool(client, 2);
+        RedisCheckAndSet cas = new RedisCheckAndSet(pool);
+        String k = rander.randkey();
+        for (int i = 0; i < 3; ++i) {
+            List<Object> replies = cas.checkAndSet(setter("v" + i), k);
+            assertEquals(1, replies.size());
+        }
+        assertEquals("v2", client.get(k));
+        assertEquals(3L, pool.borrows());
+        assertEquals(1L, pool.creates());
+        assertEquals(2L, pool.affinityHits());
+        assertEquals(1, pool.idle());
+        assertEquals(0, pool.active());
+        pool.close();
+        assertEquals(0, pool.idle());
+        assertEquals(0L, pool.size());
+    }
+
+    @Test public void poolShouldTimeOutWhenExhausted() {
+        RedisCheckAndSetPool pool = new RedisCheckAndSetPool(client, 1, 10L, 30000L);
+        IRedisClient borrowed = pool.borrow();
+        assertEquals(true, borrowed != null);
+        assertEquals(null, pool.borrow());
+        assertEquals(1L, pool.timeouts());
+        assertEquals(1L, pool.waits());
+        assertEquals(true, pool.maxWaitTime(TimeUnit.MILLISECONDS) >= 10L);
+        pool.release(borrowed, false);
+        assertEquals(1, pool.idle());
+        pool.close();
+    }
+
+    @Test public void aFailedSetPhaseShouldDiscardAndReleaseTheConnection() throws WrongTypeException, NotImplementedException, SyntaxErrorException {
+        RedisCheckAndSetPool pool = new RedisCheckAndSetPool(client, 1);
+        RedisCheckAndSet cas = new RedisCheckAndSet(pool);
+        String k = rander.randkey();
+        RedisCheckAndSetResult<String> result = cas.tryCheckAndSet(new IRedisCheckAndSet<String>() {
+                @Override public String get(IRedisClient client, String key) {
+                    return null;
+                }
+                @Override public IRedisClient set(IRedisClient multi, String key, String get) {
+                    try {
+                        multi.set(key, "half");
+                    }
+                    catch (Exception e) {
+                    }
+                    return null;
+                }
+            }, k);
+        assertEquals(RedisCheckAndSetResult.Status.ERROR, result.status());
+        assertEquals(null, client.get(k));
+        assertEquals(1, pool.idle());
+        assertEquals(1, cas.checkAndSet(setter("v1"), k).size());
+        assertEquals("v1", client.get(k));
+        pool.close();
+    }
+
+}
@@ -0,0 +1,91 @@
+package org.rarefiedredis.concurrency;
+
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.Ignore;
+import static org.junit.Assert.assertEquals;
+
+import org.rarefiedredis.RandomKey;
+import org.rarefiedredis.redis.RedisMock;
+import org.rarefiedredis.redis.IRedisClient;
+import org.rarefiedredis.redis.WrongTypeException;
+import org.rarefiedredis.redis.NotImplementedException;
+import org.rarefiedredis.redis.SyntaxErrorException;
+import org.rarefiedredis.redis.adapter.jedis.JedisIRedisClient;
+
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.List;
+import java.util.Arrays;
+
+public class RedisCheckAndSetStripesTest {
+
+    private IRedisClient client;
+    private RandomKey rander;
+
+    @Before public void initClient() {
+        rander = new RandomKey();
+        String integration = System.getProperty("integration");
+        if (integration != null && integration.equals("true")) {
+            client = new JedisIRedisClient(new JedisPool(new JedisPoolConfig(), "localhost"));
+        }
+        else {
+            client = new RedisMock();
+        }
+    }
+
+    @Test public void stripesShouldRoundUpToAPowerOfTwo() {
+        RedisCheckAndSetStripes stripes = new RedisCheckAndSetStripes(10);
+        assertEquals(16, stripes.stripes());
+        String k = rander.randkey();
+        assertEquals(stripes.stripe(k), stripes.stripe(new String(k)));
+        assertEquals(true, stripes.stripe(k) >= 0 && stripes.stripe(k) < 16);
+    }
+
+    @Test public void stripesShouldSerializeTheSameKeyAcrossThreads() throws InterruptedException {
+        final RedisCheckAndSetStripes stripes = new RedisCheckAndSetStripes(4);
+        final String k = rander.randkey();
+        final boolean[] entered = new boolean[] { false };
+        int[] locked = stripes.lock(Arrays.asList(k, k));
+        assertEquals(1, locked.length);
+        Thread thread = new Thread(new Runnable() {
+                @Override public void run() {
+                    int[] locked = stripes.lock(Arrays.asList(k));
+                    entered[0] = true;
+                    stripes.unlock(locked);
+                }
+            });
+        thread.start();
+        Thread.sleep(50L);
+        assertEquals(false, entered[0]);
+        stripes.unlock(locked);
+        thread.join();
+        assertEquals(true, entered[0]);
+        assertEquals(2L, stripes.acquisitions());
+        assertEquals(1L, stripes.contended());
+    }
+
+    @Test public void checkAndSetShouldRunUnderTheStripeLock() throws WrongTypeException, NotImplementedException, SyntaxErrorException {
+        final RedisCheckAndSetStripes stripes = new RedisCheckAndSetStripes();
+        RedisCheckAndSet cas = new RedisCheckAndSet(client).stripes(stripes);
+        String k = rander.randkey();
+        List<Object> replies = cas.checkAndSet(new IRedisCheckAndSet<String>() {
+                @Override public String get(IRedisClient client, String key) {
+                    return key;
+                }
+                @Override public IRedisClient set(IRedisClient multi, String key, String get) {
+                    try {
+                        multi.set(key, get);
+                    }
+                    catch (Exception e) {
+                    }
+                    return multi;
+                }
+            }, k);
+        assertEquals(1, replies.size());
+        assertEquals(k, client.get(k));
+        assertEquals(1L, stripes.acquisitions());
+    }
+
+}
@@ -93,4 +93,280 @@ public class RedisCheckAndSetTest {
         assertEquals(null, replies);
     }
 
-}
\ No newline at end of file
+    @Test public void checkAndSetShouldRetryAnAbortedTransaction() throws WrongTypeException, NotImplementedException, SyntaxErrorException {
+        RedisCheckAndSet cas = new RedisCheckAndSet(client, new RedisCheckAndSetRetryPolicy(3, 1L, 2L, 0L));
+        final String k = rander.randkey();
+        final String v = "v", v2 = "v2", v3 = "v3";
+        final int[] attempts = new int[] { 0 };
+        client.set(k, v);
+        List<Object> replies = cas.checkAndSet(new IRedisCheckAndSet<String>() {
+                @Override public String get(IRedisClient client, String key) {
+                    try {
+                        return client.get(key);
+                    }
+                    catch (Exception e) {
+                        return null;
+                    }
+                }
+                @Override public IRedisClient set(IRedisClient multi, String key, String get) {
+                    try {
+                        if (attempts[0]++ == 0) {
+                            other.set(k, v3);
+                        }
+                        multi.set(key, v2);
+                    }
+                    catch (Exception e) {
+                    }
+                    return multi;
+                }
+            }, k);
+        assertEquals(2, attempts[0]);
+        assertEquals(true, replies != null);
+        assertEquals(v2, client.get(k));
+    }
+
+    @Test public void checkAndSetShouldGiveUpAfterMaxAttempts() throws WrongTypeException, NotImplementedException, SyntaxErrorException {
+        RedisCheckAndSet cas = new RedisCheckAndSet(client, new RedisCheckAndSetRetryPolicy(3, 0L, 0L, 0L));
+        final String k = rander.randkey();
+        final String v = "v", v2 = "v2";
+        final int[] attempts = new int[] { 0 };
+        client.set(k, v);
+        List<Object> replies = cas.checkAndSet(new IRedisCheckAndSet<String>() {
+                @Override public String get(IRedisClient client, String key) {
+                    return null;
+                }
+                @Override public IRedisClient set(IRedisClient multi, String key, String get) {
+                    try {
+                        other.set(k, "v" + (attempts[0]++));
+                        multi.set(key, v2);
+                    }
+                    catch (Exception e) {
+                    }
+                    return multi;
+                }
+            }, k);
+        assertEquals(null, replies);
+        assertEquals(3, attempts[0]);
+    }
+
+    @Test public void tryCheckAndSetShouldReportTheOutcome() throws WrongTypeException, NotImplementedException, SyntaxErrorException {
+        RedisCheckAndSet cas = new RedisCheckAndSet(client, new RedisCheckAndSetRetryPolicy(2, 0L, 0L, 0L));
+        final String k = rander.randkey();
+        final String v = "v", v2 = "v2";
+        client.set(k, v);
+        IRedisCheckAndSet<String> swap = new IRedisCheckAndSet<String>() {
+            @Override public String get(IRedisClient client, String key) {
+                try {
+                    return client.get(key);
+                }
+                catch (Exception e) {
+                    return null;
+                }
+            }
+            @Override public IRedisClient set(IRedisClient multi, String key, String get) {
+                try {
+                    if (v.equals(get)) {
+                        multi.set(key, v2);
+                    }
+                }
+                catch (Exception e) {
+                }
+                return multi;
+            }
+        };
+        RedisCheckAndSetResult<String> result = cas.tryCheckAndSet(swap, k);
+        assertEquals(RedisCheckAndSetResult.Status.COMMITTED, result.status());
+        assertEquals(v, result.value());
+        assertEquals(1, result.attempts());
+        assertEquals(1, result.replies().size());
+        result = cas.tryCheckAndSet(swap, k);
+        assertEquals(RedisCheckAndSetResult.Status.PRECONDITION_FAILED, result.status());
+        assertEquals(null, result.value());
+        assertEquals(0, result.replies().size());
+        assertEquals(v2, client.get(k));
+        result = cas.tryCheckAndSet(new IRedisCheckAndSet<String>() {
+                @Override public String get(IRedisClient client, String key) {
+                    return null;
+                }
+                @Override public IRedisClient set(IRedisClient multi, String key, String get) {
+                    try {
+                        other.set(k, v);
+                        multi.set(key, v2);
+                    }
+                    catch (Exception e) {
+                    }
+                    return multi;
+                }
+            }, k);
+        assertEquals(RedisCheckAndSetResult.Status.ABORTED, result.status());
+        assertEquals(2, result.attempts());
+        assertEquals(null, result.replies());
+    }
+
+    @Test public void retryPolicyBackoffShouldStayWithinTheCap() {
+        RedisCheckAndSetRetryPolicy policy = new RedisCheckAndSetRetryPolicy(10, 2L, 50L, 0L);
+        for (int attempt = 1; attempt < 20; ++attempt) {
+            long backoff = policy.backoff(attempt);
+            assertEquals(true, backoff >= 0L && backoff <= 50L);
+        }
+        assertEquals(false, policy.shouldRetry(10, 0L, 0L));
+        assertEquals(false, new RedisCheckAndSetRetryPolicy(10, 2L, 50L, 100L).shouldRetry(1, 90L, 20L));
+    }
+
+    @Test public void checkAndSetShouldWatchEveryKeyGiven() throws WrongTypeException, NotImplementedException, SyntaxErrorException {
+        if (client instanceof RedisMock) {
+            // TODO: RedisMock only honors the first WATCH on a client.
+            return;
+        }
+        RedisCheckAndSet cas = new RedisCheckAndSet(client);
+        final String k1 = rander.randkey(), k2 = rander.randkey();
+        final String v = "v", v2 = "v2", v3 = "v3";
+        client.set(k1, v);
+        client.set(k2, v);
+        List<Object> replies = cas.checkAndSet(new IRedisMultiCheckAndSet<String>() {
+                @Override public String get(IRedisClient client, List<String> keys) {
+                    try {
+                        return client.get(keys.get(1));
+                    }
+                    catch (Exception e) {
+                        return null;
+                    }
+                }
+                @Override public IRedisClient set(IRedisClient multi, List<String> keys, String get) {
+                    try {
+                        other.set(k2, v3);
+                        multi.set(keys.get(0), get + v2);
+                    }
+                    catch (Exception e) {
+                    }
+                    return multi;
+                }
+            }, k1, k2);
+        assertEquals(null, replies);
+        assertEquals(v, client.get(k1));
+        replies = cas.checkAndSet(new IRedisMultiCheckAndSet<String>() {
+                @Override public String get(IRedisClient client, List<String> keys) {
+                    try {
+                        return client.get(keys.get(1));
+                    }
+                    catch (Exception e) {
+                        return null;
+                    }
+                }
+                @Override public IRedisClient set(IRedisClient multi, List<String> keys, String get) {
+                    try {
+                        multi.set(keys.get(0), get + v2);
+                    }
+                    catch (Exception e) {
+                    }
+                    return multi;
+                }
+            }, k1, k2);
+        assertEquals(1, replies.size());
+        assertEquals(v3 + v2, client.get(k1));
+    }
+
+    private IRedisCheckAndSet<String> append(final String suffix, final boolean conflict) {
+        return new IRedisCheckAndSet<String>() {
+            @Override public String get(IRedisClient client, String key) {
+                try {
+                    return client.get(key);
+                }
+                catch (Exception e) {
+                    return null;
+                }
+            }
+            @Override public IRedisClient set(IRedisClient multi, String key, String get) {
+                try {
+                    if (conflict) {
+                        other.set(key, rander.randkey());
+                    }
+                    multi.set(key, get + suffix);
+                }
+                catch (Exception e) {
+                }
+                return multi;
+            }
+        };
+    }
+
+    @Test public void batchShouldCommitManyKeysInOneTransaction() throws WrongTypeException, NotImplementedException, SyntaxErrorException {
+        RedisCheckAndSetBatch batch = new RedisCheckAndSetBatch(new RedisCheckAndSet(client));
+        String k1 = rander.randkey(), k2 = rander.randkey(), k3 = rander.randkey();
+        client.set(k1, "a");
+        client.set(k2, "b");
+        client.set(k3, "c");
+        batch.add(append("1", false), k1).add(append("2", false), k2).add(append("3", false), k3);
+        List<Boolean> committed = batch.checkAndSet();
+        assertEquals(3, committed.size());
+        assertEquals(true, committed.get(0) && committed.get(1) && committed.get(2));
+        assertEquals("a1", client.get(k1));
+        assertEquals("b2", client.get(k2));
+        assertEquals("c3", client.get(k3));
+        assertEquals(0, batch.size());
+    }
+
+    @Test public void batchShouldOnlyFailTheConflictingEntries() throws WrongTypeException, NotImplementedException, SyntaxErrorException {
+        if (client instanceof RedisMock) {
+            // TODO: RedisMock only honors the first WATCH on a client.
+            return;
+        }
+        RedisCheckAndSetBatch batch = new RedisCheckAndSetBatch(new RedisCheckAndSet(client));
+        String k1 = rander.randkey(), k2 = rander.randkey(), k3 = rander.randkey(), k4 = rander.randkey();
+        client.set(k1, "a");
+        client.set(k2, "b");
+        client.set(k3, "c");
+        client.set(k4, "d");
+        batch.add(append("1", false), k1).add(append("2", false), k2).add(append("3", true), k3).add(append("4", false), k4);
+        List<Boolean> committed = batch.checkAndSet();
+        assertEquals(true, committed.get(0));
+        assertEquals(true, committed.get(1));
+        assertEquals(false, committed.get(2));
+        assertEquals(true, committed.get(3));
+        assertEquals("a1", client.get(k1));
+        assertEquals("b2", client.get(k2));
+        assertEquals("d4", client.get(k4));
+    }
+
+    private IRedisCheckAndSet<String> skip(final boolean fail) {
+        return new IRedisCheckAndSet<String>() {
+            @Override public String get(IRedisClient client, String key) {
+                return null;
+            }
+            @Override public IRedisClient set(IRedisClient multi, String key, String get) {
+                return (fail ? null : multi);
+            }
+        };
+    }
+
+    @Test public void batchShouldOnlyReportEntriesThatQueuedTheirSet() throws WrongTypeException, NotImplementedException, SyntaxErrorException {
+        RedisCheckAndSetMetrics metrics = new RedisCheckAndSetMetrics();
+        RedisCheckAndSetBatch batch = new RedisCheckAndSetBatch(new RedisCheckAndSet(client).listener(metrics));
+        String k1 = rander.randkey(), k2 = rander.randkey(), k3 = rander.randkey();
+        client.set(k1, "a");
+        batch.add(append("1", false), k1).add(skip(false), k2).add(skip(true), k3);
+        List<Boolean> committed = batch.checkAndSet();
+        assertEquals(true, committed.get(0));
+        assertEquals(false, committed.get(1));
+        assertEquals(false, committed.get(2));
+        assertEquals("a1", client.get(k1));
+        assertEquals(1L, metrics.snapshot().committed);
+    }
+
+    @Test public void batchShouldCommitNothingWhenNoEntryQueuedItsSet() throws WrongTypeException, NotImplementedException, SyntaxErrorException {
+        RedisCheckAndSetBatch batch = new RedisCheckAndSetBatch(new RedisCheckAndSet(client));
+        batch.add(skip(false), rander.randkey()).add(skip(false), rander.randkey());
+        List<Boolean> committed = batch.checkAndSet();
+        assertEquals(false, committed.get(0));
+        assertEquals(false, committed.get(1));
+        batch.add(skip(false), rander.randkey());
+        assertEquals(false, batch.checkAndSet().get(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class) public void batchShouldRejectAnInstanceAddedTwice() {
+        RedisCheckAndSetBatch batch = new RedisCheckAndSetBatch(new RedisCheckAndSet(client));
+        IRedisCheckAndSet<String> skip = skip(false);
+        batch.add(skip, rander.randkey()).add(skip, rander.randkey());
+    }
+
+}
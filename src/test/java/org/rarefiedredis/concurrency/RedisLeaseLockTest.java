@@ -0,0 +1,306 @@
+package org.rarefiedredis.concurrency;
+
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.Ignore;
+import static org.junit.Assert.assertEquals;
+
+import org.rarefiedredis.RandomKey;
+import org.rarefiedredis.redis.RedisMock;
+import org.rarefiedredis.redis.IRedisClient;
+import org.rarefiedredis.redis.WrongTypeException;
+import org.rarefiedredis.redis.NotImplementedException;
+import org.rarefiedredis.redis.SyntaxErrorException;
+import org.rarefiedredis.redis.adapter.jedis.JedisIRedisClient;
+
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+public class RedisLeaseLockTest {
+
+    private IRedisClient client;
+    private RandomKey rander;
+
+    @Before public void initClient() {
+        rander = new RandomKey();
+        String integration = System.getProperty("integration");
+        if (integration != null && integration.equals("true")) {
+            client = new JedisIRedisClient(new JedisPool(new JedisPoolConfig(), "localhost"));
+        }
+        else {
+            client = new RedisMock();
+        }
+    }
+
+    @Test public void leaseShouldBeExclusiveAndFenced() throws WrongTypeException, NotImplementedException, SyntaxErrorException {
+        RedisLeaseLock lock = new RedisLeaseLock(client, 10000L, 50L);
+        String k = rander.randkey();
+        RedisLeaseLock.Lease lease = lock.tryAcquire(k);
+        assertEquals(true, lease != null);
+        assertEquals(true, lease.held());
+        assertEquals(lease.token, client.get(RedisLeaseLock.lockKey(k)));
+        assertEquals(null, lock.tryAcquire(k));
+        assertEquals(null, lock.acquire(k, 50L));
+        assertEquals(0L, (long)client.llen(RedisLeaseLock.waitersKey(k)));
+        assertEquals(true, lock.renew(lease));
+        assertEquals(true, lock.release(lease));
+        assertEquals(false, lease.held());
+        assertEquals(null, client.get(RedisLeaseLock.lockKey(k)));
+        assertEquals(false, lock.release(lease));
+        RedisLeaseLock.Lease next = lock.acquire(k);
+        assertEquals(true, next != null);
+        assertEquals(lease.fence + 1L, next.fence);
+        assertEquals(true, lock.release(next));
+    }
+
+    private IRedisCheckAndSet<String> setter(final String hot, final String[] held) {
+        return new IRedisCheckAndSet<String>() {
+            @Override public String get(IRedisClient client, String key) {
+                try {
+                    if (key.equals(hot)) {
+                        held[0] = client.get(RedisLeaseLock.lockKey(key));
+                    }
+                }
+                catch (Exception e) {
+                }
+                return key;
+            }
+            @Override public IRedisClient set(IRedisClient multi, String key, String get) {
+                try {
+                    multi.set(key, get);
+                }
+                catch (Exception e) {
+                }
+                return multi;
+            }
+        };
+    }
+
+    @Test public void batchShouldHoldALeaseOnSelectedKeys() throws WrongTypeException, NotImplementedException, SyntaxErrorException {
+        final RedisLeaseLock lock = new RedisLeaseLock(client, 10000L, 50L);
+        final String hot = rander.randkey(), cold = rander.randkey();
+        RedisCheckAndSet cas = new RedisCheckAndSet(client).lease(lock, new IRedisLeaseSelector() {
+                @Override public boolean lease(String key) {
+                    return key.equals(hot);
+                }
+            });
+        final String[] held = new String[] { null };
+        List<Boolean> committed = new RedisCheckAndSetBatch(cas).add(setter(hot, held), hot).add(setter(hot, held), cold).checkAndSet();
+        assertEquals(true, committed.get(0) && committed.get(1));
+        assertEquals(true, held[0] != null);
+        assertEquals(null, client.get(RedisLeaseLock.lockKey(hot)));
+        lock.close();
+    }
+
+    @Test public void checkAndSetShouldHoldALeaseOnSelectedKeys() throws WrongTypeException, NotImplementedException, SyntaxErrorException {
+        final RedisLeaseLock lock = new RedisLeaseLock(client, 10000L, 50L);
+        final String hot = rander.randkey();
+        RedisCheckAndSet cas = new RedisCheckAndSet(client).lease(lock, new IRedisLeaseSelector() {
+                @Override public boolean lease(String key) {
+                    return key.equals(hot);
+                }
+            });
+        final String[] held = new String[] { null };
+        List<Object> replies = cas.checkAndSet(new IRedisCheckAndSet<String>() {
+                @Override public String get(IRedisClient client, String key) {
+                    try {
+                        held[0] = client.get(RedisLeaseLock.lockKey(key));
+                    }
+                    catch (Exception e) {
+                    }
+                    return key;
+                }
+                @Override public IRedisClient set(IRedisClient multi, String key, String get) {
+                    try {
+                        multi.set(key, get);
+                    }
+                    catch (Exception e) {
+                    }
+                    return multi;
+                }
+            }, hot);
+        assertEquals(1, replies.size());
+        assertEquals(true, held[0] != null);
+        assertEquals(null, client.get(RedisLeaseLock.lockKey(hot)));
+    }
+
+    private Thread waiter(final RedisLeaseLock lock, final String key, final List<RedisLeaseLock.Lease> acquired) {
+        Thread thread = new Thread() {
+                @Override public void run() {
+                    RedisLeaseLock.Lease lease = lock.acquire(key, 5000L);
+                    synchronized (acquired) {
+                        acquired.add(lease);
+                    }
+                }
+            };
+        thread.start();
+        return thread;
+    }
+
+    private void awaitWaiters(String key, long count) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (client.llen(RedisLeaseLock.waitersKey(key)) < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5L);
+        }
+    }
+
+    @Test public void waitersShouldQueueAndBeHandedTheLeaseInArrivalOrder() throws Exception {
+        RedisLeaseLock lock = new RedisLeaseLock(client, 10000L, 5000L);
+        String k = rander.randkey();
+        RedisLeaseLock.Lease lease = lock.tryAcquire(k);
+        List<RedisLeaseLock.Lease> acquired = Collections.synchronizedList(new ArrayList<RedisLeaseLock.Lease>());
+        Thread first = waiter(lock, k, acquired);
+        awaitWaiters(k, 1L);
+        Thread second = waiter(lock, k, acquired);
+        awaitWaiters(k, 2L);
+        assertEquals(2L, (long)client.llen(RedisLeaseLock.waitersKey(k)));
+        String head = client.lindex(RedisLeaseLock.waitersKey(k), 0L);
+        // Nobody may jump the queue, even with the lock free.
+        assertEquals(true, lock.release(lease));
+        assertEquals(null, lock.tryAcquire(k));
+        first.join(5000L);
+        assertEquals(1, acquired.size());
+        RedisLeaseLock.Lease handedOff = acquired.get(0);
+        assertEquals(head, handedOff.token);
+        assertEquals(lease.fence + 1L, handedOff.fence);
+        assertEquals(1L, (long)client.llen(RedisLeaseLock.waitersKey(k)));
+        assertEquals(true, lock.release(handedOff));
+        second.join(5000L);
+        assertEquals(2, acquired.size());
+        assertEquals(lease.fence + 2L, acquired.get(1).fence);
+        assertEquals(0L, (long)client.llen(RedisLeaseLock.waitersKey(k)));
+        assertEquals(true, lock.release(acquired.get(1)));
+        lock.close();
+    }
+
+    @Test public void releaseShouldSignalTheHeadWaiter() throws Exception {
+        RedisLeaseLock lock = new RedisLeaseLock(client, 10000L, 5000L);
+        String k = rander.randkey();
+        RedisLeaseLock.Lease lease = lock.tryAcquire(k);
+        List<RedisLeaseLock.Lease> acquired = Collections.synchronizedList(new ArrayList<RedisLeaseLock.Lease>());
+        Thread waiting = waiter(lock, k, acquired);
+        awaitWaiters(k, 1L);
+        // The head only wakes on its signal, well inside its one second
+        // re-check.
+        long released = System.currentTimeMillis();
+        assertEquals(true, lock.release(lease));
+        waiting.join(5000L);
+        assertEquals(1, acquired.size());
+        assertEquals(true, System.currentTimeMillis() - released < 900L);
+        assertEquals(true, lock.release(acquired.get(0)));
+        lock.close();
+    }
+
+    // A client whose first call of method, on any of its connections, is
+    // preceded by touch, e.g. to change a watched key mid-transaction.
+    private IRedisClient touching(final IRedisClient client, final String method, final Runnable touch, final AtomicBoolean touched) {
+        return (IRedisClient)Proxy.newProxyInstance(IRedisClient.class.getClassLoader(), new Class<?>[] { IRedisClient.class }, new InvocationHandler() {
+                @Override public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+                    if (m.getName().equals(method) && touched.compareAndSet(false, true)) {
+                        touch.run();
+                    }
+                    try {
+                        Object reply = m.invoke(client, args);
+                        if (m.getName().equals("createClient")) {
+                            return touching((IRedisClient)reply, method, touch, touched);
+                        }
+                        return reply;
+                    }
+                    catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            });
+    }
+
+    private Runnable pexpire(final String key) {
+        return new Runnable() {
+            @Override public void run() {
+                try {
+                    client.pexpire(key, 10000L);
+                }
+                catch (Exception e) {
+                }
+            }
+        };
+    }
+
+    @Test public void releaseShouldRetryWhenItsTransactionAborts() throws WrongTypeException, NotImplementedException, SyntaxErrorException {
+        String k = rander.randkey();
+        AtomicBoolean touched = new AtomicBoolean(false);
+        RedisLeaseLock lock = new RedisLeaseLock(touching(client, "lindex", pexpire(RedisLeaseLock.lockKey(k)), touched), 10000L, 50L);
+        RedisLeaseLock.Lease lease = lock.tryAcquire(k);
+        assertEquals(true, lease != null);
+        touched.set(false);
+        assertEquals(true, lock.release(lease));
+        assertEquals(true, touched.get());
+        assertEquals(null, client.get(RedisLeaseLock.lockKey(k)));
+        lock.close();
+    }
+
+    @Test public void renewShouldRetryWhenItsTransactionAborts() throws WrongTypeException, NotImplementedException, SyntaxErrorException {
+        String k = rander.randkey();
+        AtomicBoolean touched = new AtomicBoolean(true);
+        RedisLeaseLock lock = new RedisLeaseLock(touching(client, "get", pexpire(RedisLeaseLock.lockKey(k)), touched), 10000L, 50L);
+        RedisLeaseLock.Lease lease = lock.tryAcquire(k);
+        touched.set(false);
+        assertEquals(true, lock.renew(lease));
+        assertEquals(true, touched.get());
+        assertEquals(true, lease.held());
+        assertEquals(true, lock.release(lease));
+        lock.close();
+    }
+
+    @Test public void releaseShouldNotRetryOnceTheLockIsSomeoneElses() throws WrongTypeException, NotImplementedException, SyntaxErrorException {
+        RedisLeaseLock lock = new RedisLeaseLock(client, 10000L, 50L);
+        String k = rander.randkey();
+        RedisLeaseLock.Lease lease = lock.tryAcquire(k);
+        client.set(RedisLeaseLock.lockKey(k), "other");
+        assertEquals(false, lock.release(lease));
+        assertEquals(false, lock.renew(lease));
+        assertEquals("other", client.get(RedisLeaseLock.lockKey(k)));
+        lock.close();
+    }
+
+    @Test public void checkAndSetShouldRefuseToCommitUnderALostLease() throws WrongTypeException, NotImplementedException, SyntaxErrorException {
+        final RedisLeaseLock lock = new RedisLeaseLock(client, 10000L, 50L);
+        final String hot = rander.randkey();
+        RedisCheckAndSet cas = new RedisCheckAndSet(client).lease(lock, new IRedisLeaseSelector() {
+                @Override public boolean lease(String key) {
+                    return true;
+                }
+            });
+        RedisCheckAndSetResult<String> result = cas.tryCheckAndSet(new IRedisCheckAndSet<String>() {
+                @Override public String get(IRedisClient client, String key) {
+                    try {
+                        // Someone else took the lease after it expired.
+                        client.incr(RedisLeaseLock.fenceKey(key));
+                    }
+                    catch (Exception e) {
+                    }
+                    return key;
+                }
+                @Override public IRedisClient set(IRedisClient multi, String key, String get) {
+                    try {
+                        multi.set(key, get);
+                    }
+                    catch (Exception e) {
+                    }
+                    return multi;
+                }
+            }, hot);
+        assertEquals(RedisCheckAndSetResult.Status.ERROR, result.status());
+        assertEquals(null, client.get(hot));
+        lock.close();
+    }
+
+}
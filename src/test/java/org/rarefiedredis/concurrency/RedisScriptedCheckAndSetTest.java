@@ -0,0 +1,71 @@
+package org.rarefiedredis.concurrency;
+
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.Ignore;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.HashSet;
+
+public class RedisScriptedCheckAndSetTest {
+
+    private final class TestRedisScripter implements IRedisScripter {
+
+        public Set<String> cached = new HashSet<String>();
+        public List<String> calls = new ArrayList<String>();
+
+        @Override public Object eval(String script, List<String> keys, List<String> args) throws Exception {
+            calls.add("eval");
+            cached.add(new RedisScript(script).sha1());
+            return keys.get(0) + args.get(0);
+        }
+
+        @Override public Object evalsha(String sha1, List<String> keys, List<String> args) throws Exception {
+            calls.add("evalsha");
+            if (!cached.contains(sha1)) {
+                throw new Exception("NOSCRIPT No matching script. Please use EVAL.");
+            }
+            return keys.get(0) + args.get(0);
+        }
+
+    }
+
+    @Test public void scriptShouldHaveTheSameSha1AsRedis() {
+        assertEquals("e0e1f9fabfc9d4800c877a703b823ac0578ff8db", new RedisScript("return 1").sha1());
+    }
+
+    @Test public void checkAndSetShouldFallBackToEvalOnlyWhenTheScriptIsNotCached() throws Exception {
+        TestRedisScripter scripter = new TestRedisScripter();
+        RedisScriptedCheckAndSet cas = new RedisScriptedCheckAndSet(scripter);
+        RedisScript script = new RedisScript("return KEYS[1] .. ARGV[1]");
+        assertEquals("kv", cas.checkAndSet(script, Arrays.asList("k"), Arrays.asList("v")));
+        assertEquals("kv", cas.checkAndSet(script, Arrays.asList("k"), Arrays.asList("v")));
+        assertEquals(Arrays.asList("evalsha", "eval", "evalsha"), scripter.calls);
+        assertEquals(2L, cas.evalshas());
+        assertEquals(1L, cas.evals());
+    }
+
+    @Test public void checkAndSetShouldRethrowOtherErrors() {
+        RedisScriptedCheckAndSet cas = new RedisScriptedCheckAndSet(new IRedisScripter() {
+                @Override public Object eval(String script, List<String> keys, List<String> args) throws Exception {
+                    return null;
+                }
+                @Override public Object evalsha(String sha1, List<String> keys, List<String> args) throws Exception {
+                    throw new Exception("WRONGTYPE Operation against a key holding the wrong kind of value");
+                }
+            });
+        try {
+            cas.checkAndSet(new RedisScript("return 1"), Arrays.asList("k"), new ArrayList<String>());
+        }
+        catch (Exception e) {
+            assertEquals(0L, cas.evals());
+            return;
+        }
+        assertEquals(true, false);
+    }
+
+}
@@ -0,0 +1,35 @@
+package org.rarefiedredis.concurrency;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ExecutionException;
+
+public class RedisSettableFutureTest {
+
+    @Test public void onlyTheFirstSetOrFailShouldCount() throws InterruptedException, ExecutionException {
+        RedisSettableFuture<String> future = new RedisSettableFuture<String>();
+        assertEquals(false, future.isDone());
+        assertEquals(true, future.set("v1"));
+        assertEquals(true, future.isDone());
+        assertEquals(false, future.set("v2"));
+        assertEquals(false, future.fail(new Exception("late")));
+        assertEquals(false, future.cancel(false));
+        assertEquals("v1", future.get());
+    }
+
+    @Test public void aLateSetShouldNotOverwriteAFailure() throws InterruptedException {
+        RedisSettableFuture<String> future = new RedisSettableFuture<String>();
+        assertEquals(true, future.fail(new Exception("first")));
+        assertEquals(false, future.set("v1"));
+        String got;
+        try {
+            got = future.get();
+        }
+        catch (ExecutionException e) {
+            got = e.getCause().getMessage();
+        }
+        assertEquals("first", got);
+    }
+
+}
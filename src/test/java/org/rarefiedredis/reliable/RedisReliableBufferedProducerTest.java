@@ -0,0 +1,114 @@
+package org.rarefiedredis.reliable;
+
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.Ignore;
+import static org.junit.Assert.assertEquals;
+
+import org.rarefiedredis.RandomKey;
+import org.rarefiedredis.redis.RedisMock;
+import org.rarefiedredis.redis.IRedisClient;
+import org.rarefiedredis.redis.WrongTypeException;
+import org.rarefiedredis.redis.NotImplementedException;
+import org.rarefiedredis.redis.SyntaxErrorException;
+import org.rarefiedredis.redis.adapter.jedis.JedisIRedisClient;
+
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
+
+public class RedisReliableBufferedProducerTest {
+
+    private IRedisClient client;
+    private RandomKey rander;
+
+    @Before public void initClient() {
+        rander = new RandomKey();
+        String integration = System.getProperty("integration");
+        if (integration != null && integration.equals("true")) {
+            client = new JedisIRedisClient(new JedisPool(new JedisPoolConfig(), "localhost"));
+        }
+        else {
+            client = new RedisMock();
+        }
+    }
+
+    @Test public void bufferedProducerShouldProduceABatchInOneTransaction() throws WrongTypeException, NotImplementedException, InterruptedException, ExecutionException {
+        RedisReliableBufferedProducer<String> producer = new RedisReliableBufferedProducer<String>(RedisReliableProducer.ListProducer(client), 3, 1000L);
+        String k = rander.randkey();
+        List<Future<Object>> futures = producer.produceAll(k, Arrays.asList("v1", "v2", "v3"));
+        for (Future<Object> future : futures) {
+            future.get();
+        }
+        assertEquals(1L, producer.flushes());
+        assertEquals(3L, producer.produced());
+        List<String> range = client.lrange(k, 0L, -1L);
+        assertEquals(3, range.size());
+        assertEquals("v3", range.get(0));
+        assertEquals("v1", range.get(2));
+        producer.close();
+    }
+
+    @Test public void bufferedProducerShouldFlushAfterLingering() throws WrongTypeException, NotImplementedException, InterruptedException, ExecutionException {
+        RedisReliableBufferedProducer<String> producer = new RedisReliableBufferedProducer<String>(RedisReliableProducer.ListProducer(client), 100, 5L);
+        String k = rander.randkey();
+        producer.produce(k, "v").get();
+        assertEquals(1L, (long)client.llen(k));
+        producer.close();
+    }
+
+    @Test public void bufferedProducerShouldFailEveryFutureOfAWrongTypeKey() throws WrongTypeException, NotImplementedException, SyntaxErrorException, InterruptedException {
+        RedisReliableBufferedProducer<String> producer = new RedisReliableBufferedProducer<String>(RedisReliableProducer.ListProducer(client), 2, 1000L);
+        String k = rander.randkey();
+        client.set(k, "v");
+        List<Future<Object>> futures = producer.produceAll(k, Arrays.asList("v1", "v2"));
+        int failed = 0;
+        for (Future<Object> future : futures) {
+            try {
+                future.get();
+            }
+            catch (ExecutionException e) {
+                assertEquals(true, e.getCause() instanceof WrongTypeException);
+                ++failed;
+            }
+        }
+        assertEquals(2, failed);
+        assertEquals("v", client.get(k));
+        producer.close();
+    }
+
+    @Test public void closeShouldFlushWhatIsQueued() throws WrongTypeException, NotImplementedException {
+        RedisReliableBufferedProducer<String> producer = new RedisReliableBufferedProducer<String>(RedisReliableProducer.ListProducer(client), 100, 60000L);
+        String k = rander.randkey();
+        producer.produce(k, "v1");
+        producer.produce(k, "v2");
+        producer.close();
+        assertEquals(2L, (long)client.llen(k));
+    }
+
+    @Test public void bufferedProducerShouldCompleteEachFutureFromItsOwnReplies() throws WrongTypeException, NotImplementedException, InterruptedException, ExecutionException {
+        RedisReliableBufferedProducer<String> producer = new RedisReliableBufferedProducer<String>(RedisReliableProducer.BoundedListProducer(client, 2L), 3, 1000L);
+        String k = rander.randkey();
+        // Every production queues an LPUSH and an LTRIM.
+        List<Future<Object>> futures = producer.produceAll(k, Arrays.asList("v1", "v2", "v3"));
+        assertEquals(1L, futures.get(0).get());
+        assertEquals(2L, futures.get(1).get());
+        // LPUSH replies with the length before its LTRIM.
+        assertEquals(3L, futures.get(2).get());
+        assertEquals(2L, (long)client.llen(k));
+        producer.close();
+    }
+
+    @Test public void bufferedProducerShouldLingerAtLeastAMillisecond() throws WrongTypeException, NotImplementedException, InterruptedException, ExecutionException {
+        RedisReliableBufferedProducer<String> producer = new RedisReliableBufferedProducer<String>(RedisReliableProducer.ListProducer(client), 100, 0L);
+        String k = rander.randkey();
+        assertEquals(1L, producer.produce(k, "v").get());
+        producer.close();
+    }
+
+}
@@ -6,19 +6,34 @@ import org.junit.Ignore;
 import static org.junit.Assert.assertEquals;
 
 import org.rarefiedredis.RandomKey;
+import org.rarefiedredis.RedisSortedSetMock;
 import org.rarefiedredis.redis.RedisMock;
+import org.rarefiedredis.redis.IRedisSortedSet.ZsetPair;
 import org.rarefiedredis.redis.IRedisClient;
 import org.rarefiedredis.redis.WrongTypeException;
 import org.rarefiedredis.redis.NotImplementedException;
 import org.rarefiedredis.redis.SyntaxErrorException;
 import org.rarefiedredis.adapter.RedisListAdapter;
+import org.rarefiedredis.concurrency.RedisCheckAndSet;
+import org.rarefiedredis.concurrency.RedisCheckAndSetMetrics;
+import org.rarefiedredis.concurrency.RedisCheckAndSetResult;
+import org.rarefiedredis.util.IRedisCodec;
+import org.rarefiedredis.util.RedisCodecs;
 import org.rarefiedredis.redis.adapter.jedis.JedisIRedisClient;
 
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 
 import java.util.List;
+import java.util.Map;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutionException;
 
 public class RedisReliableConsumerTest {
 
@@ -72,6 +87,169 @@ public class RedisReliableConsumerTest {
         assertEquals(v, client.get(ik));
     }
 
+    @Test public void tryConsumeShouldTellAnEmptySourceFromACommit() throws WrongTypeException, SyntaxErrorException, NotImplementedException {
+        String k = rander.randkey(), ik = rander.randkey();
+        String v = "v";
+        RedisReliableConsumer<String> consumer = RedisReliableConsumer.StringConsumer(client);
+        assertEquals(RedisCheckAndSetResult.Status.PRECONDITION_FAILED, consumer.tryConsume(k, ik).status());
+        client.set(k, v);
+        RedisCheckAndSetResult<String> result = consumer.tryConsume(k, ik);
+        assertEquals(RedisCheckAndSetResult.Status.COMMITTED, result.status());
+        assertEquals(v, result.value());
+        assertEquals(RedisCheckAndSetResult.Status.COMMITTED, consumer.tryAck(k, ik, v).status());
+        assertEquals(RedisCheckAndSetResult.Status.PRECONDITION_FAILED, consumer.tryAck(k, ik, v).status());
+    }
+
+    @Test public void consumeShouldReliablyConsumeAHashField() throws WrongTypeException, NotImplementedException {
+        String k = rander.randkey(), ik = rander.randkey();
+        RedisReliableConsumer<Map.Entry<String, String>> consumer = RedisReliableConsumer.HashConsumer(client);
+        client.hset(k, "f1", "v1");
+        Map.Entry<String, String> consumed = consumer.consume(k, ik);
+        assertEquals("f1", consumed.getKey());
+        assertEquals("v1", consumed.getValue());
+        assertEquals(false, client.hexists(k, "f1"));
+        assertEquals("v1", client.hget(ik, "f1"));
+        assertEquals(null, consumer.consume(k, ik));
+        assertEquals(consumed, consumer.fail(k, ik, consumed));
+        assertEquals("v1", client.hget(k, "f1"));
+        consumed = consumer.consume(k, ik, new AbstractMap.SimpleImmutableEntry<String, String>("f1", null));
+        assertEquals(consumed, consumer.ack(k, ik, consumed));
+        assertEquals(0L, (long)client.hlen(ik));
+    }
+
+    @Test public void codecConsumerShouldDecodeWhatTheCodecProducerEncoded() throws WrongTypeException, NotImplementedException {
+        String k = rander.randkey(), ik = rander.randkey();
+        IRedisCodec<Long> codec = RedisCodecs.compressed(RedisCodecs.LONG, 1024);
+        RedisReliableCodecProducer<Long> producer = new RedisReliableCodecProducer<Long>(RedisReliableProducer.ListProducer(client), codec);
+        RedisReliableCodecConsumer<Long> consumer = new RedisReliableCodecConsumer<Long>(RedisReliableConsumer.ListConsumer(client), codec);
+        producer.produce(k, 12345L);
+        Long consumed = consumer.consume(k, ik);
+        assertEquals(12345L, (long)consumed);
+        assertEquals(12345L, (long)consumer.ack(k, ik, consumed));
+        assertEquals(0L, (long)client.llen(ik));
+    }
+
+    @Test public void batchConsumeShouldClaimManyListElementsInOneTransaction() throws WrongTypeException, NotImplementedException {
+        String k = rander.randkey(), ik = rander.randkey();
+        RedisReliableConsumer<String> consumer = RedisReliableConsumer.ListConsumer(client);
+        client.lpush(k, "v1", "v2", "v3");
+        List<String> consumed = consumer.consume(k, ik, 2);
+        assertEquals(2, consumed.size());
+        assertEquals("v1", consumed.get(0));
+        assertEquals("v2", consumed.get(1));
+        assertEquals(1L, (long)client.llen(k));
+        assertEquals(2L, (long)client.llen(ik));
+        assertEquals(1, consumer.consume(k, ik, 2).size());
+        assertEquals(0, consumer.consume(k, ik, 2).size());
+    }
+
+    @Test public void batchConsumeShouldClaimManySetMembers() throws WrongTypeException, NotImplementedException {
+        String k = rander.randkey(), ik = rander.randkey();
+        RedisReliableConsumer<String> consumer = RedisReliableConsumer.SetConsumer(client);
+        client.sadd(k, "v1", "v2", "v3");
+        List<String> consumed = consumer.consume(k, ik, 10);
+        assertEquals(3, consumed.size());
+        assertEquals(0L, (long)client.scard(k));
+        assertEquals(3L, (long)client.scard(ik));
+    }
+
+    @Test public void batchConsumeShouldClaimTheLowestScoredMembers() throws WrongTypeException, NotImplementedException {
+        IRedisClient client = (this.client instanceof RedisMock ? RedisSortedSetMock.wrap(this.client) : this.client);
+        String k = rander.randkey(), ik = rander.randkey();
+        RedisReliableConsumer<String> consumer = new RedisReliableConsumer<String>(client, new RedisReliableSortedSetMover(), new RedisReliableSortedSetDeleter());
+        client.zadd(k, new ZsetPair("a", 1.0), new ZsetPair("b", 2.0), new ZsetPair("c", 3.0));
+        List<String> consumed = consumer.consume(k, ik, 2);
+        assertEquals(2, consumed.size());
+        assertEquals("a", consumed.get(0));
+        assertEquals("b", consumed.get(1));
+        assertEquals(2.0, client.zscore(ik, "b"), 0.0);
+        assertEquals(1L, (long)client.zcard(k));
+    }
+
+    @Test public void batchAckShouldAckEveryFoundListElementInOneTransaction() throws WrongTypeException, NotImplementedException {
+        String k = rander.randkey(), ik = rander.randkey();
+        RedisReliableConsumer<String> consumer = RedisReliableConsumer.ListConsumer(client);
+        client.lpush(k, "v1", "v2", "v1", "v3");
+        List<String> consumed = consumer.consume(k, ik, 4);
+        assertEquals(4, consumed.size());
+        List<String> acked = consumer.ack(k, ik, Arrays.asList("v1", "v1", "v1", "v2", "missing"));
+        assertEquals(3, acked.size());
+        assertEquals(1L, (long)client.llen(ik));
+        assertEquals("v3", client.lindex(ik, 0L));
+    }
+
+    @Test public void batchAckShouldAckSetMembers() throws WrongTypeException, NotImplementedException {
+        String k = rander.randkey(), ik = rander.randkey();
+        RedisReliableConsumer<String> consumer = RedisReliableConsumer.SetConsumer(client);
+        client.sadd(ik, "v1", "v2", "v3");
+        List<String> acked = consumer.ack(k, ik, Arrays.asList("v1", "v3", "v4"));
+        assertEquals(2, acked.size());
+        assertEquals(1L, (long)client.scard(ik));
+        assertEquals(true, client.sismember(ik, "v2"));
+    }
+
+    @Test public void blockingConsumeShouldWakeWhenAProducerSignals() throws WrongTypeException, NotImplementedException, InterruptedException {
+        final String k = rander.randkey(), ik = rander.randkey();
+        RedisReliableNotifier notifier = new RedisReliableNotifier();
+        final RedisReliableProducer<String> producer = RedisReliableProducer.SetProducer(client).notifier(notifier);
+        RedisReliableConsumer<String> consumer = RedisReliableConsumer.SetConsumer(client).notifier(notifier).pollInterval(60000L);
+        Thread thread = new Thread(new Runnable() {
+                @Override public void run() {
+                    try {
+                        Thread.sleep(50L);
+                        producer.produce(k, "v");
+                    }
+                    catch (Exception e) {
+                    }
+                }
+            });
+        long start = System.currentTimeMillis();
+        thread.start();
+        assertEquals("v", consumer.consume(k, ik, 10L, TimeUnit.SECONDS));
+        assertEquals(true, System.currentTimeMillis() - start < 5000L);
+        thread.join();
+    }
+
+    @Test public void blockingConsumeShouldGiveUpAfterTheTimeout() throws WrongTypeException, NotImplementedException, InterruptedException {
+        String k = rander.randkey(), ik = rander.randkey();
+        RedisReliableConsumer<String> consumer = RedisReliableConsumer.SetConsumer(client).notifier(new RedisReliableNotifier()).pollInterval(10L);
+        long start = System.currentTimeMillis();
+        assertEquals(null, consumer.consume(k, ik, 100L, TimeUnit.MILLISECONDS));
+        assertEquals(true, System.currentTimeMillis() - start >= 100L);
+    }
+
+    @Test public void blockingConsumeShouldWakeAListConsumerWhenAProducerSignals() throws WrongTypeException, NotImplementedException, InterruptedException {
+        final String k = rander.randkey(), ik = rander.randkey();
+        RedisReliableNotifier notifier = new RedisReliableNotifier();
+        final RedisReliableProducer<String> producer = RedisReliableProducer.ListProducer(client).notifier(notifier);
+        RedisReliableConsumer<String> consumer = RedisReliableConsumer.ListConsumer(client).notifier(notifier).pollInterval(60000L);
+        Thread thread = new Thread(new Runnable() {
+                @Override public void run() {
+                    try {
+                        Thread.sleep(50L);
+                        producer.produce(k, "v");
+                    }
+                    catch (Exception e) {
+                    }
+                }
+            });
+        long start = System.currentTimeMillis();
+        thread.start();
+        assertEquals("v", consumer.consume(k, ik, 10L, TimeUnit.SECONDS));
+        assertEquals(true, System.currentTimeMillis() - start < 5000L);
+        assertEquals(1L, (long)client.llen(ik));
+        thread.join();
+    }
+
+    @Test public void blockingConsumeShouldGiveUpOnAnEmptyListAfterTheTimeout() throws WrongTypeException, NotImplementedException, InterruptedException {
+        String k = rander.randkey(), ik = rander.randkey();
+        RedisReliableConsumer<String> consumer = RedisReliableConsumer.ListConsumer(client).pollInterval(10L);
+        long start = System.currentTimeMillis();
+        assertEquals(null, consumer.consume(k, ik, 100L, TimeUnit.MILLISECONDS));
+        assertEquals(true, System.currentTimeMillis() - start >= 100L);
+        assertEquals(0L, (long)client.llen(ik));
+    }
+
     @Test public void consumeShouldReliablyConsumeAPopListElement() throws WrongTypeException, NotImplementedException {
         String k = rander.randkey(), ik = rander.randkey();
         String v1 = "v1", v2 = "v2", v3 = "v3";
@@ -203,4 +381,69 @@ public class RedisReliableConsumerTest {
         assertEquals(false, iklst.contains(v3));
     }
 
+    @Test public void asyncShouldReliablyConsumeAckAndFailAPopListElement() throws WrongTypeException, NotImplementedException, InterruptedException, ExecutionException {
+        String k = rander.randkey(), ik = rander.randkey();
+        String v1 = "v1", v2 = "v2";
+        RedisReliableConsumer<String> consumer = RedisReliableConsumer.ListConsumer(client);
+        client.rpush(k, v1, v2);
+        Future<String> consumed = consumer.consumeAsync(k, ik);
+        assertEquals(v2, consumed.get());
+        assertEquals(v1, consumer.consumeAsync(k, ik).get());
+        assertEquals(2L, (long)client.llen(ik));
+        assertEquals(v2, consumer.ackAsync(k, ik, v2).get());
+        assertEquals(v1, consumer.failAsync(k, ik, v1).get());
+        assertEquals(0L, (long)client.llen(ik));
+        assertEquals(1L, (long)client.llen(k));
+    }
+
+    @Test public void concurrentAsyncCallsShouldNotShareMoverOrDeleterState() throws WrongTypeException, NotImplementedException, InterruptedException, ExecutionException {
+        String k = rander.randkey(), ik = rander.randkey();
+        RedisReliableConsumer<String> consumer = RedisReliableConsumer.ListConsumer(client);
+        int n = 20;
+        for (int i = 0; i < n; ++i) {
+            client.lpush(k, "v" + i);
+        }
+        List<Future<String>> futures = new ArrayList<Future<String>>();
+        for (int i = 0; i < n; ++i) {
+            futures.add(consumer.consumeAsync(k, ik));
+        }
+        // Calls that lose the race abort and return null; the rest must
+        // each have moved exactly their own element.
+        List<String> consumed = new ArrayList<String>();
+        for (Future<String> future : futures) {
+            String element = future.get();
+            if (element != null) {
+                consumed.add(element);
+            }
+        }
+        assertEquals(consumed.size(), new HashSet<String>(consumed).size());
+        assertEquals((long)consumed.size(), (long)client.llen(ik));
+        assertEquals((long)n, client.llen(k) + client.llen(ik));
+        futures.clear();
+        for (String element : consumed) {
+            futures.add(consumer.ackAsync(k, ik, element));
+        }
+        Set<String> remaining = new HashSet<String>(consumed);
+        for (int i = 0; i < consumed.size(); ++i) {
+            String acked = futures.get(i).get();
+            if (acked != null) {
+                assertEquals(consumed.get(i), acked);
+                remaining.remove(acked);
+            }
+        }
+        assertEquals(remaining, new HashSet<String>(client.lrange(ik, 0L, -1L)));
+    }
+
+    @Test public void blockingConsumeShouldNotRunATransactionOnAnEmptyQueue() throws WrongTypeException, NotImplementedException, InterruptedException {
+        String k = rander.randkey(), ik = rander.randkey();
+        RedisCheckAndSetMetrics metrics = new RedisCheckAndSetMetrics();
+        RedisCheckAndSet cas = new RedisCheckAndSet(client).listener(metrics);
+        RedisReliableConsumer<String> consumer = new RedisReliableConsumer<String>(cas, new RedisReliableListMover(true), new RedisReliableListDeleter()).pollInterval(10L);
+        assertEquals(null, consumer.consume(k, ik, 100L, TimeUnit.MILLISECONDS));
+        assertEquals(0L, metrics.snapshot().committed + metrics.snapshot().preconditionFailed);
+        client.lpush(k, "v1");
+        assertEquals("v1", consumer.consume(k, ik, 100L, TimeUnit.MILLISECONDS));
+        assertEquals(1L, metrics.snapshot().committed);
+    }
+
 }
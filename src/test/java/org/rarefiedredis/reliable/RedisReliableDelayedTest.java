@@ -0,0 +1,110 @@
+package org.rarefiedredis.reliable;
+
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.Ignore;
+import static org.junit.Assert.assertEquals;
+
+import org.rarefiedredis.RandomKey;
+import org.rarefiedredis.RedisSortedSetMock;
+import org.rarefiedredis.redis.RedisMock;
+import org.rarefiedredis.redis.IRedisClient;
+import org.rarefiedredis.redis.IRedisSortedSet.ZsetPair;
+import org.rarefiedredis.redis.WrongTypeException;
+import org.rarefiedredis.redis.NotImplementedException;
+import org.rarefiedredis.redis.adapter.jedis.JedisIRedisClient;
+
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class RedisReliableDelayedTest {
+
+    private IRedisClient client;
+    private RandomKey rander;
+
+    @Before public void initClient() {
+        rander = new RandomKey();
+        String integration = System.getProperty("integration");
+        if (integration != null && integration.equals("true")) {
+            client = new JedisIRedisClient(new JedisPool(new JedisPoolConfig(), "localhost"));
+        }
+        else {
+            client = RedisSortedSetMock.wrap(new RedisMock());
+        }
+    }
+
+    @Test public void consumeShouldOnlyClaimDueElements() throws WrongTypeException, NotImplementedException {
+        RedisReliableDelayedProducer producer = new RedisReliableDelayedProducer(client);
+        RedisReliableDelayedConsumer consumer = new RedisReliableDelayedConsumer(client);
+        String k = rander.randkey(), ik = rander.randkey();
+        long now = System.currentTimeMillis();
+        producer.produceAt(k, now - 1000L, "v1", "v2");
+        producer.produceIn(k, 1L, TimeUnit.MINUTES, "v3");
+        List<String> claimed = consumer.consume(k, ik);
+        assertEquals(2, claimed.size());
+        assertEquals(true, claimed.contains("v1") && claimed.contains("v2"));
+        assertEquals(1L, (long)client.zcard(k));
+        assertEquals(2L, (long)client.zcard(ik));
+        assertEquals(0, consumer.consume(k, ik).size());
+        assertEquals(true, consumer.nextDue(k) > now);
+    }
+
+    @Test public void consumeShouldClaimAtMostMaxElements() throws WrongTypeException, NotImplementedException {
+        RedisReliableDelayedProducer producer = new RedisReliableDelayedProducer(client);
+        RedisReliableDelayedConsumer consumer = new RedisReliableDelayedConsumer(client);
+        String k = rander.randkey(), ik = rander.randkey();
+        producer.produceAt(k, 0L, "v1", "v2", "v3");
+        assertEquals(2, consumer.consume(k, ik, 2).size());
+        assertEquals(1, consumer.consume(k, ik, 2).size());
+    }
+
+    @Test public void ackAndFailShouldSettleAClaimedElement() throws WrongTypeException, NotImplementedException {
+        RedisReliableDelayedProducer producer = new RedisReliableDelayedProducer(client);
+        RedisReliableDelayedConsumer consumer = new RedisReliableDelayedConsumer(client);
+        String k = rander.randkey(), ik = rander.randkey();
+        producer.produceAt(k, 0L, "v1", "v2");
+        consumer.consume(k, ik);
+        assertEquals("v1", consumer.ack(k, ik, "v1"));
+        assertEquals("v2", consumer.fail(k, ik, "v2"));
+        assertEquals(0L, (long)client.zcard(ik));
+        assertEquals(0.0, client.zscore(k, "v2"), 0.0);
+    }
+
+    @Test public void delayedMoverShouldKeepTheDueTimesOfClaimedMembers() throws WrongTypeException, NotImplementedException {
+        RedisReliableDelayedProducer producer = new RedisReliableDelayedProducer(client);
+        RedisReliableMover mover = new RedisReliableMover(client);
+        String k = rander.randkey(), ik = rander.randkey();
+        producer.produceAt(k, 5L, "v1");
+        producer.produceAt(k, 7L, "v2");
+        producer.produceIn(k, 1L, TimeUnit.MINUTES, "v3");
+        List<ZsetPair> moved = mover.move(new RedisReliableDelayedMover(10L), k, ik);
+        assertEquals(2, moved.size());
+        assertEquals("v1", moved.get(0).member);
+        assertEquals(5.0, client.zscore(ik, "v1"), 0.0);
+        assertEquals(7.0, client.zscore(ik, "v2"), 0.0);
+        assertEquals(null, client.zscore(k, "v1"));
+        assertEquals(null, mover.move(new RedisReliableDelayedMover(10L), k, ik));
+    }
+
+    @Test(expected = WrongTypeException.class) public void delayedMoverShouldThrowOnANonSortedSetDestination() throws WrongTypeException, NotImplementedException {
+        RedisReliableDelayedProducer producer = new RedisReliableDelayedProducer(client);
+        RedisReliableMover mover = new RedisReliableMover(client);
+        String k = rander.randkey(), ik = rander.randkey();
+        producer.produceAt(k, 0L, "v1");
+        client.lpush(ik, "v0");
+        mover.move(new RedisReliableDelayedMover(10L), k, ik);
+    }
+
+    @Test public void delayedMoverShouldNotClaimFromANonSortedSetSource() throws WrongTypeException, NotImplementedException {
+        RedisReliableMover mover = new RedisReliableMover(client);
+        String k = rander.randkey(), ik = rander.randkey();
+        client.lpush(k, "v1");
+        assertEquals(null, mover.move(new RedisReliableDelayedMover(10L), k, ik));
+        assertEquals(1L, (long)client.llen(k));
+        assertEquals(0L, (long)client.zcard(ik));
+    }
+
+}
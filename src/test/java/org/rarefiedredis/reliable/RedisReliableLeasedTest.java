@@ -0,0 +1,249 @@
+package org.rarefiedredis.reliable;
+
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.Ignore;
+import static org.junit.Assert.assertEquals;
+
+import org.rarefiedredis.RandomKey;
+import org.rarefiedredis.RedisSortedSetMock;
+import org.rarefiedredis.redis.RedisMock;
+import org.rarefiedredis.redis.IRedisClient;
+import org.rarefiedredis.redis.IRedisSortedSet.ZsetPair;
+import org.rarefiedredis.redis.WrongTypeException;
+import org.rarefiedredis.redis.NotImplementedException;
+import org.rarefiedredis.redis.adapter.jedis.JedisIRedisClient;
+
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class RedisReliableLeasedTest {
+
+    private IRedisClient client;
+    private RandomKey rander;
+
+    @Before public void initClient() {
+        rander = new RandomKey();
+        String integration = System.getProperty("integration");
+        if (integration != null && integration.equals("true")) {
+            client = new JedisIRedisClient(new JedisPool(new JedisPoolConfig(), "localhost"));
+        }
+        else {
+            client = RedisSortedSetMock.wrap(new RedisMock());
+        }
+    }
+
+    @Test public void consumeShouldLeaseAndAckShouldReleaseTheElement() throws WrongTypeException, NotImplementedException {
+        RedisReliableLeasedConsumer consumer = RedisReliableLeasedConsumer.ListConsumer(client, 60000L);
+        String k = rander.randkey(), ik = rander.randkey(), leases = RedisReliableLeasedMover.leases(ik);
+        client.lpush(k, "v1", "v2");
+        long before = System.currentTimeMillis();
+        assertEquals("v1", consumer.consume(k, ik));
+        assertEquals(1L, (long)client.zcard(leases));
+        assertEquals(true, client.zscore(leases, "v1") >= (double)(before + 60000L));
+        assertEquals("v1", consumer.ack(k, ik, "v1"));
+        assertEquals(0L, (long)client.zcard(leases));
+        assertEquals("v2", consumer.consume(k, ik));
+        assertEquals("v2", consumer.fail(k, ik, "v2"));
+        assertEquals(0L, (long)client.zcard(leases));
+        assertEquals(1L, (long)client.llen(k));
+    }
+
+    @Test public void batchConsumeAndAckShouldLeaseEveryElement() throws WrongTypeException, NotImplementedException {
+        RedisReliableLeasedConsumer consumer = RedisReliableLeasedConsumer.ListConsumer(client, 60000L);
+        String k = rander.randkey(), ik = rander.randkey(), leases = RedisReliableLeasedMover.leases(ik);
+        client.lpush(k, "v1", "v2", "v3");
+        List<String> claimed = consumer.consume(k, ik, 3);
+        assertEquals(3, claimed.size());
+        assertEquals(3L, (long)client.zcard(leases));
+        assertEquals(3, consumer.ack(k, ik, claimed).size());
+        assertEquals(0L, (long)client.zcard(leases));
+    }
+
+    @Test public void batchAckShouldAckEveryElementWithoutABatchDeleter() throws WrongTypeException, NotImplementedException {
+        final RedisReliableListDeleter lister = new RedisReliableListDeleter();
+        IRedisReliableDeleter<String> deleter = new IRedisReliableDeleter<String>() {
+            @Override public String type() {
+                return lister.type();
+            }
+            @Override public String verify(IRedisClient c, String key, String element) {
+                return lister.verify(c, key, element);
+            }
+            @Override public IRedisClient multi(IRedisClient multi, String key, String element) {
+                return lister.multi(multi, key, element);
+            }
+        };
+        RedisReliableLeasedConsumer consumer = new RedisReliableLeasedConsumer(client, new RedisReliableListMover(true), deleter, 60000L);
+        String k = rander.randkey(), ik = rander.randkey(), leases = RedisReliableLeasedMover.leases(ik);
+        client.lpush(k, "v1", "v2", "v3");
+        List<String> claimed = consumer.consume(k, ik, 3);
+        assertEquals(3, claimed.size());
+        assertEquals(3, consumer.ack(k, ik, claimed).size());
+        assertEquals(0L, (long)client.llen(ik));
+        assertEquals(0L, (long)client.zcard(leases));
+    }
+
+    @Test public void reaperShouldHandBackExpiredElementsInBatches() throws WrongTypeException, NotImplementedException {
+        RedisReliableLeasedConsumer consumer = RedisReliableLeasedConsumer.SetConsumer(client, 1L);
+        String k = rander.randkey(), ik = rander.randkey(), leases = RedisReliableLeasedMover.leases(ik);
+        client.sadd(k, "v1", "v2", "v3");
+        for (int i = 0; i < 3; ++i) {
+            consumer.consume(k, ik);
+        }
+        assertEquals(3L, (long)client.scard(ik));
+        try {
+            Thread.sleep(10L);
+        }
+        catch (InterruptedException e) {
+        }
+        RedisReliableReaper reaper = new RedisReliableReaper(consumer, k, ik, 2);
+        assertEquals(2, reaper.reap());
+        assertEquals(1, reaper.reap());
+        assertEquals(0, reaper.reap());
+        assertEquals(3L, reaper.reaped());
+        assertEquals(3L, (long)client.scard(k));
+        assertEquals(0L, (long)client.scard(ik));
+        assertEquals(0L, (long)client.zcard(leases));
+    }
+
+    @Test public void extendShouldKeepTheReaperAway() throws WrongTypeException, NotImplementedException {
+        RedisReliableLeasedConsumer consumer = RedisReliableLeasedConsumer.ListConsumer(client, 1L);
+        String k = rander.randkey(), ik = rander.randkey();
+        client.lpush(k, "v1");
+        assertEquals("v1", consumer.consume(k, ik));
+        assertEquals(true, consumer.extend(ik, "v1", 60000L));
+        try {
+            Thread.sleep(10L);
+        }
+        catch (InterruptedException e) {
+        }
+        RedisReliableReaper reaper = new RedisReliableReaper(consumer, k, ik);
+        assertEquals(0, reaper.reap());
+        assertEquals(1L, (long)client.llen(ik));
+        assertEquals("v1", consumer.ack(k, ik, "v1"));
+        assertEquals(false, consumer.extend(ik, "v1", 60000L));
+    }
+
+    @Test public void reaperShouldForgetLeasesOfElementsNoLongerInProcess() throws WrongTypeException, NotImplementedException {
+        RedisReliableLeasedConsumer consumer = RedisReliableLeasedConsumer.ListConsumer(client, 1L);
+        String k = rander.randkey(), ik = rander.randkey(), leases = RedisReliableLeasedMover.leases(ik);
+        client.lpush(k, "v1");
+        assertEquals("v1", consumer.consume(k, ik));
+        client.lrem(ik, 0L, "v1");
+        try {
+            Thread.sleep(10L);
+        }
+        catch (InterruptedException e) {
+        }
+        assertEquals(Arrays.asList("v1"), consumer.expired(ik, System.currentTimeMillis(), 10));
+        assertEquals(0, new RedisReliableReaper(consumer, k, ik).reap());
+        assertEquals(0L, (long)client.zcard(leases));
+    }
+
+    @Test public void reapShouldLeaveAnElementWhoseLeaseWasExtendedAfterItExpired() throws WrongTypeException, NotImplementedException {
+        RedisReliableLeasedConsumer consumer = RedisReliableLeasedConsumer.ListConsumer(client, 1L);
+        String k = rander.randkey(), ik = rander.randkey();
+        client.lpush(k, "v1");
+        assertEquals("v1", consumer.consume(k, ik));
+        try {
+            Thread.sleep(10L);
+        }
+        catch (InterruptedException e) {
+        }
+        long now = System.currentTimeMillis();
+        assertEquals(Arrays.asList("v1"), consumer.expired(ik, now, 10));
+        assertEquals(true, consumer.extend(ik, "v1", 60000L));
+        assertEquals(null, consumer.reap(k, ik, "v1", now));
+        assertEquals(false, consumer.forget(ik, "v1", now));
+        assertEquals(1L, (long)client.llen(ik));
+        assertEquals(0L, (long)client.llen(k));
+    }
+
+    @Test public void reapShouldAbortWhenTheLeaseIsExtendedDuringTheMove() throws WrongTypeException, NotImplementedException {
+        final String k = rander.randkey(), ik = rander.randkey();
+        final String leases = RedisReliableLeasedMover.leases(ik);
+        final AtomicBoolean extended = new AtomicBoolean(false);
+        final RedisReliableListMover lister = new RedisReliableListMover(true);
+        IRedisReliableMover<String> mover = new IRedisReliableMover<String>() {
+            @Override public String type() {
+                return lister.type();
+            }
+            @Override public String verify(IRedisClient c, String source, String dest, String element) {
+                return lister.verify(c, source, dest, element);
+            }
+            @Override public IRedisClient multi(IRedisClient multi, String source, String dest, String get) {
+                if (source.equals(ik) && extended.compareAndSet(false, true)) {
+                    try {
+                        client.zadd(leases, new ZsetPair(get, (double)(System.currentTimeMillis() + 60000L)));
+                    }
+                    catch (Exception e) {
+                    }
+                }
+                return lister.multi(multi, source, dest, get);
+            }
+        };
+        RedisReliableLeasedConsumer consumer = new RedisReliableLeasedConsumer(client, mover, new RedisReliableListDeleter(), 1L);
+        client.lpush(k, "v1");
+        assertEquals("v1", consumer.consume(k, ik));
+        try {
+            Thread.sleep(10L);
+        }
+        catch (InterruptedException e) {
+        }
+        assertEquals(0, new RedisReliableReaper(consumer, k, ik).reap());
+        assertEquals(true, extended.get());
+        assertEquals(1L, (long)client.llen(ik));
+        assertEquals(0L, (long)client.llen(k));
+        assertEquals(1L, (long)client.zcard(leases));
+    }
+
+    @Test public void forgetShouldKeepTheLeaseOfAnElementStillInProcess() throws WrongTypeException, NotImplementedException {
+        RedisReliableLeasedConsumer consumer = RedisReliableLeasedConsumer.ListConsumer(client, 1L);
+        String k = rander.randkey(), ik = rander.randkey(), leases = RedisReliableLeasedMover.leases(ik);
+        client.lpush(k, "v1");
+        assertEquals("v1", consumer.consume(k, ik));
+        try {
+            Thread.sleep(10L);
+        }
+        catch (InterruptedException e) {
+        }
+        assertEquals(false, consumer.forget(ik, "v1", System.currentTimeMillis()));
+        assertEquals(1L, (long)client.zcard(leases));
+    }
+
+    @Test public void reaperShouldNotForgetALeaseWhenTheMoveFails() throws WrongTypeException, NotImplementedException {
+        final String k = rander.randkey(), ik = rander.randkey();
+        final String leases = RedisReliableLeasedMover.leases(ik);
+        final RedisReliableListMover lister = new RedisReliableListMover(true);
+        IRedisReliableMover<String> mover = new IRedisReliableMover<String>() {
+            @Override public String type() {
+                return lister.type();
+            }
+            @Override public String verify(IRedisClient c, String source, String dest, String element) {
+                if (source.equals(ik)) {
+                    throw new IllegalStateException("verify failed");
+                }
+                return lister.verify(c, source, dest, element);
+            }
+            @Override public IRedisClient multi(IRedisClient multi, String source, String dest, String get) {
+                return lister.multi(multi, source, dest, get);
+            }
+        };
+        RedisReliableLeasedConsumer consumer = new RedisReliableLeasedConsumer(client, mover, new RedisReliableListDeleter(), 1L);
+        client.lpush(k, "v1");
+        assertEquals("v1", consumer.consume(k, ik));
+        try {
+            Thread.sleep(10L);
+        }
+        catch (InterruptedException e) {
+        }
+        assertEquals(0, new RedisReliableReaper(consumer, k, ik).reap());
+        assertEquals(1L, (long)client.llen(ik));
+        assertEquals(1L, (long)client.zcard(leases));
+    }
+
+}
@@ -13,6 +13,8 @@ import org.rarefiedredis.redis.NotImplementedException;
 import org.rarefiedredis.redis.SyntaxErrorException;
 import org.rarefiedredis.redis.adapter.jedis.JedisIRedisClient;
 import org.rarefiedredis.redis.IRedisSortedSet.ZsetPair;
+import org.rarefiedredis.concurrency.RedisCheckAndSetResult;
+import org.rarefiedredis.util.RedisTypeCache;
 
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
@@ -326,4 +328,67 @@ public class RedisReliableMoverTest {
         assertEquals(false, true);
     }
 
-}
\ No newline at end of file
+    @Test public void moveShouldReportAReadFailureAsAnErrorNotAFailedPrecondition() throws WrongTypeException, NotImplementedException {
+        RedisReliableMover mover = new RedisReliableMover(client);
+        String k1 = rander.randkey(), k2 = rander.randkey();
+        RedisCheckAndSetResult<String> result = mover.tryMove(new IRedisReliableMover<String>() {
+                @Override public String type() {
+                    return null;
+                }
+                @Override public String verify(IRedisClient client, String source, String dest, String element) {
+                    throw new IllegalStateException("connection lost");
+                }
+                @Override public IRedisClient multi(IRedisClient multi, String source, String dest, String get) {
+                    return multi;
+                }
+            }, k1, k2);
+        assertEquals(RedisCheckAndSetResult.Status.ERROR, result.status());
+        result = mover.tryMove(new RedisReliableListMover(), k1, k2);
+        assertEquals(RedisCheckAndSetResult.Status.PRECONDITION_FAILED, result.status());
+    }
+
+    @Test public void moveShouldNotReportAWrongTypeFromAnAbortedAttempt() throws WrongTypeException, NotImplementedException {
+        RedisReliableMover mover = new RedisReliableMover(client);
+        final String k1 = rander.randkey(), k2 = rander.randkey();
+        final RedisReliableListMover lister = new RedisReliableListMover();
+        client.lpush(k1, "v1");
+        client.lpush(k2, "v0");
+        String moved = mover.move(new IRedisReliableMover<String>() {
+                private int attempts = 0;
+                @Override public String type() {
+                    if (++attempts > 1) {
+                        return lister.type();
+                    }
+                    // Aborts this attempt, which also sees the wrong type.
+                    try {
+                        client.lpush(k1, "v2");
+                    }
+                    catch (Exception e) {
+                    }
+                    return "hash";
+                }
+                @Override public String verify(IRedisClient client, String source, String dest, String element) {
+                    return lister.verify(client, source, dest, element);
+                }
+                @Override public IRedisClient multi(IRedisClient multi, String source, String dest, String get) {
+                    return lister.multi(multi, source, dest, get);
+                }
+            }, k1, k2);
+        assertEquals("v1", moved);
+        assertEquals(2L, (long)client.llen(k2));
+    }
+
+    @Test public void typeCachedMoverShouldKeepTheTypeWhileTheSourceIsEmpty() throws WrongTypeException, NotImplementedException {
+        RedisTypeCache cache = new RedisTypeCache();
+        RedisReliableMover mover = new RedisReliableMover(client).typeCache(cache);
+        String k = rander.randkey(), ik = rander.randkey();
+        client.lpush(ik, "v0");
+        for (int i = 0; i < 3; ++i) {
+            assertEquals(null, mover.move(new RedisReliableListMover(), k, ik));
+        }
+        assertEquals(0L, cache.invalidations());
+        assertEquals(1L, cache.misses());
+        assertEquals(2L, cache.hits());
+    }
+
+}
@@ -0,0 +1,69 @@
+package org.rarefiedredis.reliable;
+
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.Ignore;
+import static org.junit.Assert.assertEquals;
+
+import org.rarefiedredis.RandomKey;
+import org.rarefiedredis.redis.RedisMock;
+import org.rarefiedredis.redis.IRedisClient;
+import org.rarefiedredis.redis.WrongTypeException;
+import org.rarefiedredis.redis.NotImplementedException;
+import org.rarefiedredis.redis.adapter.jedis.JedisIRedisClient;
+
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.Map;
+
+public class RedisReliablePriorityTest {
+
+    private IRedisClient client;
+    private RandomKey rander;
+
+    @Before public void initClient() {
+        rander = new RandomKey();
+        String integration = System.getProperty("integration");
+        if (integration != null && integration.equals("true")) {
+            client = new JedisIRedisClient(new JedisPool(new JedisPoolConfig(), "localhost"));
+        }
+        else {
+            client = new RedisMock();
+        }
+    }
+
+    @Test public void consumeShouldFallBackToLowerTiers() throws WrongTypeException, NotImplementedException {
+        RedisReliablePriorityProducer<String> producer = RedisReliablePriorityProducer.ListProducer(client, 3);
+        RedisReliablePriorityConsumer<String> consumer = RedisReliablePriorityConsumer.ListConsumer(client, 1, 0, 0);
+        String k = rander.randkey(), ik = "{" + k + "}:inprocess";
+        producer.produce(k, 2, "v");
+        Map.Entry<Integer, String> consumed = consumer.consume(k, ik);
+        assertEquals(2, (int)consumed.getKey());
+        assertEquals("v", consumed.getValue());
+        assertEquals(null, consumer.consume(k, ik));
+        assertEquals("v", consumer.fail(k, ik, consumed));
+        assertEquals(1L, consumer.depths(k)[2]);
+        consumed = consumer.consume(k, ik);
+        assertEquals("v", consumer.ack(k, ik, consumed));
+        assertEquals(0L, (long)client.llen(ik));
+    }
+
+    @Test public void consumeShouldShareOutTiersByWeight() throws WrongTypeException, NotImplementedException {
+        RedisReliablePriorityProducer<String> producer = RedisReliablePriorityProducer.ListProducer(client, 2);
+        RedisReliablePriorityConsumer<String> consumer = RedisReliablePriorityConsumer.ListConsumer(client, 3, 1);
+        String k = rander.randkey(), ik = "{" + k + "}:inprocess";
+        producer.produce(k, 0, "a1", "a2", "a3", "a4");
+        producer.produce(k, 1, "b1", "b2", "b3", "b4");
+        int[] counts = new int[2];
+        for (int i = 0; i < 4; ++i) {
+            ++counts[consumer.consume(k, ik).getKey()];
+        }
+        assertEquals(3, counts[0]);
+        assertEquals(1, counts[1]);
+        long[] depths = consumer.depths(k);
+        assertEquals(1L, depths[0]);
+        assertEquals(3L, depths[1]);
+    }
+
+}
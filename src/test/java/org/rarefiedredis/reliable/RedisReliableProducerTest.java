@@ -7,6 +7,7 @@ import static org.junit.Assert.assertEquals;
 
 import org.rarefiedredis.RandomKey;
 import org.rarefiedredis.redis.RedisMock;
+import org.rarefiedredis.util.RedisTypeCache;
 import org.rarefiedredis.redis.IRedisClient;
 import org.rarefiedredis.redis.WrongTypeException;
 import org.rarefiedredis.redis.NotImplementedException;
@@ -18,7 +19,11 @@ import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 
 import java.util.List;
+import java.util.AbstractMap;
+import java.util.Map;
 import java.util.ArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
 
 public class RedisReliableProducerTest {
 
@@ -84,6 +89,66 @@ public class RedisReliableProducerTest {
         assertEquals(v1, range.get(2));
     }
 
+    @Test public void batchedListProducerShouldQueueOneCommandPerChunk() throws WrongTypeException, NotImplementedException {
+        RedisReliableProducer<String> producer = RedisReliableProducer.ListProducer(client, 2);
+        String k = rander.randkey();
+        String v1 = "v1", v2 = "v2", v3 = "v3";
+        assertEquals(2, producer.produce(k, v1, v2, v3).size());
+        List<String> range = client.lrange(k, 0L, -1L);
+        assertEquals(3, range.size());
+        assertEquals(v3, range.get(0));
+        assertEquals(v2, range.get(1));
+        assertEquals(v1, range.get(2));
+    }
+
+    @Test public void setProducerShouldProduceSetMembers() throws WrongTypeException, NotImplementedException {
+        RedisReliableProducer<String> producer = RedisReliableProducer.SetProducer(client, 100);
+        String k = rander.randkey();
+        String v1 = "v1", v2 = "v2", v3 = "v3";
+        assertEquals(1, producer.produce(k, v1, v2, v3, v1).size());
+        assertEquals(3L, (long)client.scard(k));
+        assertEquals(true, client.sismember(k, v2));
+    }
+
+    @Test public void unwatchedListProducerShouldProduceListValues() throws WrongTypeException, NotImplementedException {
+        RedisReliableProducer<String> producer = RedisReliableProducer.ListProducer(client).unwatched(1000L);
+        String k = rander.randkey();
+        String v1 = "v1", v2 = "v2";
+        assertEquals(1, producer.produce(k, v1).size());
+        assertEquals(1, producer.produce(k, v2).size());
+        List<String> range = client.lrange(k, 0L, -1L);
+        assertEquals(2, range.size());
+        assertEquals(v2, range.get(0));
+        assertEquals(v1, range.get(1));
+    }
+
+    @Test public void unwatchedListProducerShouldStillCheckTheType() throws WrongTypeException, NotImplementedException, SyntaxErrorException {
+        RedisReliableProducer<String> producer = RedisReliableProducer.ListProducer(client).unwatched(0L);
+        String k = rander.randkey();
+        String v = "v";
+        client.set(k, v);
+        try {
+            producer.produce(k, v);
+        }
+        catch (WrongTypeException e) {
+            assertEquals(v, client.get(k));
+            return;
+        }
+        assertEquals(true, false);
+    }
+
+    @Test public void typeCachedListProducerShouldSkipTheTypeCheck() throws WrongTypeException, NotImplementedException {
+        RedisTypeCache cache = new RedisTypeCache();
+        RedisReliableProducer<String> producer = RedisReliableProducer.ListProducer(client).typeCache(cache);
+        String k = rander.randkey();
+        producer.produce(k, "v1");
+        producer.produce(k, "v2");
+        producer.produce(k, "v3");
+        assertEquals(3L, (long)client.llen(k));
+        assertEquals(2L, cache.misses());
+        assertEquals(1L, cache.hits());
+    }
+
     @Test public void listProducerShouldNotProduceAnythingIfKeyIsNotAList() throws WrongTypeException, NotImplementedException, SyntaxErrorException {
         RedisReliableProducer<String> producer = RedisReliableProducer.ListProducer(client);
         String k = rander.randkey();
@@ -193,4 +258,92 @@ public class RedisReliableProducerTest {
         assertEquals(10L, (long)client.llen(k));
     }
 
+    @Test public void boundedListProducerWithSlackShouldTrimOnlyPastTheSlack() throws WrongTypeException, NotImplementedException {
+        RedisReliableProducer<String> producer = RedisReliableProducer.BoundedListProducer(client, 10L, 5L);
+        String k = rander.randkey();
+        for (int i = 0; i < 14; ++i) {
+            producer.produce(k, String.valueOf(i));
+        }
+        assertEquals(14L, (long)client.llen(k));
+        producer.produce(k, "14");
+        assertEquals(10L, (long)client.llen(k));
+    }
+
+    @Test public void boundedListProducerWithSlackShouldTrimWhenTheSampledLengthIsTooLong() throws WrongTypeException, NotImplementedException {
+        RedisReliableProducer<String> producer = RedisReliableProducer.BoundedListProducer(client, 10L, 5L);
+        String k = rander.randkey();
+        for (int i = 0; i < 15; ++i) {
+            client.lpush(k, String.valueOf(i));
+        }
+        producer.produce(k, "15");
+        assertEquals(10L, (long)client.llen(k));
+    }
+
+    @Test public void boundedListProducerWithSlackShouldKeepATrimWhoseAttemptAborted() throws WrongTypeException, NotImplementedException {
+        final RedisReliableBoundedListProducer bounded = new RedisReliableBoundedListProducer(10L, 5L, null);
+        final String k = rander.randkey();
+        final boolean[] conflict = new boolean[] { false };
+        RedisReliableProducer<String> producer = new RedisReliableProducer<String>(client, new IRedisReliableStatefulProducer<String>() {
+                @Override public String type() {
+                    return bounded.type();
+                }
+                @Override public IRedisClient multi(IRedisClient multi, String key, String production) {
+                    if (conflict[0]) {
+                        conflict[0] = false;
+                        try {
+                            client.lpush(key, "other");
+                        }
+                        catch (Exception e) {
+                        }
+                    }
+                    return bounded.multi(multi, key, production);
+                }
+                @Override public void begin(String key) {
+                    bounded.begin(key);
+                }
+                @Override public void committed(String key, List<Object> replies) {
+                    bounded.committed(key, replies);
+                }
+            });
+        for (int i = 0; i < 14; ++i) {
+            producer.produce(k, String.valueOf(i));
+        }
+        assertEquals(14L, (long)client.llen(k));
+        conflict[0] = true;
+        producer.produce(k, "14");
+        assertEquals(10L, (long)client.llen(k));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test public void hashProducerShouldSetManyFieldsInOneCommand() throws WrongTypeException, NotImplementedException {
+        RedisReliableProducer<Map.Entry<String, String>> producer = RedisReliableProducer.HashProducer(client);
+        String k = rander.randkey();
+        assertEquals(1, producer.produce(k, new AbstractMap.SimpleImmutableEntry<String, String>("f1", "v1"), new AbstractMap.SimpleImmutableEntry<String, String>("f2", "v2")).size());
+        assertEquals(2L, (long)client.hlen(k));
+        assertEquals("v2", client.hget(k, "f2"));
+    }
+
+    @Test public void produceAsyncShouldProduceListValues() throws WrongTypeException, NotImplementedException, InterruptedException, ExecutionException {
+        RedisReliableProducer<String> producer = RedisReliableProducer.ListProducer(client);
+        String k = rander.randkey();
+        String v1 = "v1", v2 = "v2";
+        Future<List<Object>> future = producer.produceAsync(k, v1, v2);
+        assertEquals(2, future.get().size());
+        assertEquals(2L, (long)client.llen(k));
+    }
+
+    @Test public void produceAsyncShouldFailWithWrongTypeIfKeyIsNotAList() throws WrongTypeException, NotImplementedException, SyntaxErrorException, InterruptedException {
+        RedisReliableProducer<String> producer = RedisReliableProducer.ListProducer(client);
+        String k = rander.randkey();
+        String v = "v";
+        client.set(k, v);
+        try {
+            producer.produceAsync(k, v).get();
+        }
+        catch (ExecutionException e) {
+            assertEquals(true, e.getCause() instanceof WrongTypeException);
+            return;
+        }
+        assertEquals(true, false);
+    }
 }
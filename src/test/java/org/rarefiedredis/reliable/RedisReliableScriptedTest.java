@@ -0,0 +1,138 @@
+package org.rarefiedredis.reliable;
+
+import org.junit.Test;
+import org.junit.Before;
+import static org.junit.Assert.assertEquals;
+
+import org.rarefiedredis.RandomKey;
+import org.rarefiedredis.redis.RedisMock;
+import org.rarefiedredis.redis.IRedisClient;
+import org.rarefiedredis.redis.IRedisSortedSet.ZsetPair;
+import org.rarefiedredis.redis.WrongTypeException;
+import org.rarefiedredis.redis.NotImplementedException;
+import org.rarefiedredis.redis.SyntaxErrorException;
+import org.rarefiedredis.redis.adapter.jedis.JedisIRedisClient;
+import org.rarefiedredis.concurrency.IRedisScripter;
+import org.rarefiedredis.concurrency.RedisJedisScripter;
+
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+public class RedisReliableScriptedTest {
+
+    private IRedisClient client;
+    private IRedisScripter scripter;
+    private RandomKey rander;
+
+    @Before public void initClient() {
+        rander = new RandomKey();
+        String integration = System.getProperty("integration");
+        if (integration != null && integration.equals("true")) {
+            JedisPool pool = new JedisPool(new JedisPoolConfig(), "localhost");
+            client = new JedisIRedisClient(pool);
+            scripter = new RedisJedisScripter(pool);
+        }
+        else {
+            client = new RedisMock();
+        }
+    }
+
+    @Test public void listScriptsShouldProduceConsumeAckAndFail() throws WrongTypeException, NotImplementedException {
+        if (client instanceof RedisMock) {
+            // TODO: RedisMock has no EVAL.
+            return;
+        }
+        String k = rander.randkey(), ik = rander.randkey();
+        RedisReliableScriptedProducer producer = RedisReliableScriptedProducer.ListProducer(scripter);
+        RedisReliableScriptedConsumer consumer = RedisReliableScriptedConsumer.ListConsumer(scripter);
+        assertEquals(3L, producer.produce(k, "v1", "v2", "v3"));
+        assertEquals("v1", consumer.consume(k, ik));
+        assertEquals("v3", consumer.consume(k, ik, "v3"));
+        assertEquals(null, consumer.consume(k, ik, "v4"));
+        assertEquals(2L, (long)client.llen(ik));
+        assertEquals("v1", consumer.ack(k, ik, "v1"));
+        assertEquals(null, consumer.ack(k, ik, "v1"));
+        assertEquals("v3", consumer.fail(k, ik, "v3"));
+        assertEquals(0L, (long)client.llen(ik));
+        assertEquals(2L, (long)client.llen(k));
+    }
+
+    @Test public void boundedListScriptShouldTrimToTheBound() throws WrongTypeException, NotImplementedException {
+        if (client instanceof RedisMock) {
+            // TODO: RedisMock has no EVAL.
+            return;
+        }
+        String k = rander.randkey();
+        RedisReliableScriptedProducer producer = RedisReliableScriptedProducer.BoundedListProducer(scripter, 2L);
+        producer.produce(k, "v1", "v2", "v3");
+        assertEquals(2L, (long)client.llen(k));
+        assertEquals("v1", client.lindex(k, -1L));
+    }
+
+    @Test public void setScriptsShouldProduceConsumeAndAck() throws WrongTypeException, NotImplementedException {
+        if (client instanceof RedisMock) {
+            // TODO: RedisMock has no EVAL.
+            return;
+        }
+        String k = rander.randkey(), ik = rander.randkey();
+        RedisReliableScriptedProducer producer = RedisReliableScriptedProducer.SetProducer(scripter);
+        RedisReliableScriptedConsumer consumer = RedisReliableScriptedConsumer.SetConsumer(scripter);
+        producer.produce(k, "v1", "v2");
+        assertEquals("v2", consumer.consume(k, ik, "v2"));
+        String random = consumer.consume(k, ik);
+        assertEquals("v1", random);
+        assertEquals(null, consumer.consume(k, ik));
+        assertEquals(2L, (long)client.scard(ik));
+        assertEquals("v1", consumer.ack(k, ik, "v1"));
+        assertEquals("v2", consumer.fail(k, ik, "v2"));
+        assertEquals(true, client.sismember(k, "v2"));
+    }
+
+    @Test public void sortedSetScriptsShouldKeepTheScore() throws WrongTypeException, NotImplementedException {
+        if (client instanceof RedisMock) {
+            // TODO: RedisMock has no EVAL.
+            return;
+        }
+        String k = rander.randkey(), ik = rander.randkey();
+        RedisReliableScriptedConsumer consumer = RedisReliableScriptedConsumer.SortedSetConsumer(scripter);
+        client.zadd(k, new ZsetPair("v1", 2.0), new ZsetPair("v2", 1.0));
+        assertEquals("v2", consumer.consume(k, ik));
+        assertEquals(1.0, client.zscore(ik, "v2"), 0.0);
+        assertEquals("v2", consumer.ack(k, ik, "v2"));
+        assertEquals(0L, (long)client.zcard(ik));
+    }
+
+    @Test public void stringScriptsShouldMoveAndDeleteTheValue() throws WrongTypeException, NotImplementedException, SyntaxErrorException {
+        if (client instanceof RedisMock) {
+            // TODO: RedisMock has no EVAL.
+            return;
+        }
+        String k = rander.randkey(), ik = rander.randkey();
+        RedisReliableScriptedProducer producer = RedisReliableScriptedProducer.StringProducer(scripter);
+        RedisReliableScriptedConsumer consumer = RedisReliableScriptedConsumer.StringConsumer(scripter);
+        assertEquals("OK", producer.produce(k, "v"));
+        assertEquals("v", consumer.consume(k, ik));
+        assertEquals(null, client.get(k));
+        assertEquals(null, consumer.ack(k, ik, "w"));
+        assertEquals("v", consumer.ack(k, ik, "v"));
+        assertEquals(null, client.get(ik));
+    }
+
+    @Test public void scriptsShouldRejectAKeyOfTheWrongType() throws WrongTypeException, NotImplementedException, SyntaxErrorException {
+        if (client instanceof RedisMock) {
+            // TODO: RedisMock has no EVAL.
+            return;
+        }
+        String k = rander.randkey(), ik = rander.randkey();
+        client.set(k, "v");
+        try {
+            RedisReliableScriptedConsumer.ListConsumer(scripter).consume(k, ik);
+        }
+        catch (WrongTypeException e) {
+            assertEquals(0L, (long)client.llen(ik));
+            return;
+        }
+        assertEquals(false, true);
+    }
+
+}
@@ -0,0 +1,86 @@
+package org.rarefiedredis.reliable;
+
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.Ignore;
+import static org.junit.Assert.assertEquals;
+
+import org.rarefiedredis.RandomKey;
+import org.rarefiedredis.redis.RedisMock;
+import org.rarefiedredis.redis.IRedisClient;
+import org.rarefiedredis.redis.WrongTypeException;
+import org.rarefiedredis.redis.NotImplementedException;
+import org.rarefiedredis.redis.adapter.jedis.JedisIRedisClient;
+
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.HashSet;
+
+public class RedisReliableShardedTest {
+
+    private IRedisClient client;
+    private RandomKey rander;
+
+    @Before public void initClient() {
+        rander = new RandomKey();
+        String integration = System.getProperty("integration");
+        if (integration != null && integration.equals("true")) {
+            client = new JedisIRedisClient(new JedisPool(new JedisPoolConfig(), "localhost"));
+        }
+        else {
+            client = new RedisMock();
+        }
+    }
+
+    @Test public void partitionKeysShouldShareAHashTagWithTheirInProcessKeys() {
+        assertEquals("{q:3}", RedisReliableShardedProducer.partition("q", 3));
+        assertEquals("ip{q:3}", RedisReliableShardedProducer.inprocess("ip", "q", 3));
+    }
+
+    @Test public void roundRobinProducerShouldSpreadCallsOverPartitions() throws WrongTypeException, NotImplementedException {
+        RedisReliableShardedProducer<String> producer = new RedisReliableShardedProducer<String>(RedisReliableProducer.ListProducer(client), 3);
+        String k = rander.randkey();
+        for (int i = 0; i < 6; ++i) {
+            producer.produce(k, String.valueOf(i));
+        }
+        for (int p = 0; p < 3; ++p) {
+            assertEquals(2L, (long)client.llen(RedisReliableShardedProducer.partition(k, p)));
+        }
+    }
+
+    @Test public void hashProducerShouldPutEachProductionInItsPartition() throws WrongTypeException, NotImplementedException {
+        RedisReliableShardedProducer<String> producer = new RedisReliableShardedProducer<String>(RedisReliableProducer.ListProducer(client), 4, RedisReliableShardedProducer.Partitioner.HASH);
+        String k = rander.randkey();
+        producer.produce(k, "a", "b", "c", "d", "e");
+        long total = 0L;
+        for (int p = 0; p < 4; ++p) {
+            List<String> range = client.lrange(RedisReliableShardedProducer.partition(k, p), 0L, -1L);
+            for (String v : range) {
+                assertEquals(p, producer.partition(v));
+            }
+            total += range.size();
+        }
+        assertEquals(5L, total);
+    }
+
+    @Test public void consumerShouldStealFromOtherPartitionsWhenItsOwnAreEmpty() throws WrongTypeException, NotImplementedException {
+        String k = rander.randkey(), ik = rander.randkey();
+        client.lpush(RedisReliableShardedProducer.partition(k, 1), "v");
+        RedisReliableShardedConsumer<String> consumer = new RedisReliableShardedConsumer<String>(RedisReliableConsumer.ListConsumer(client), 2, 0, 2);
+        assertEquals(1, consumer.owned().length);
+        assertEquals(0, consumer.owned()[0]);
+        Map.Entry<Integer, String> consumed = consumer.consume(k, ik);
+        assertEquals(1, (int)consumed.getKey());
+        assertEquals("v", consumed.getValue());
+        assertEquals(1, consumer.steals());
+        assertEquals(1L, (long)client.llen(RedisReliableShardedProducer.inprocess(ik, k, 1)));
+        assertEquals("v", consumer.ack(k, ik, consumed));
+        assertEquals(0L, (long)client.llen(RedisReliableShardedProducer.inprocess(ik, k, 1)));
+        assertEquals(null, consumer.consume(k, ik));
+    }
+
+}
@@ -0,0 +1,111 @@
+package org.rarefiedredis.reliable;
+
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.Ignore;
+import static org.junit.Assert.assertEquals;
+
+import org.rarefiedredis.RandomKey;
+import org.rarefiedredis.redis.RedisMock;
+import org.rarefiedredis.redis.IRedisClient;
+import org.rarefiedredis.redis.WrongTypeException;
+import org.rarefiedredis.redis.NotImplementedException;
+import org.rarefiedredis.redis.adapter.jedis.JedisIRedisClient;
+
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.Set;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class RedisReliableWorkerTest {
+
+    private IRedisClient client;
+    private RandomKey rander;
+
+    @Before public void initClient() {
+        rander = new RandomKey();
+        String integration = System.getProperty("integration");
+        if (integration != null && integration.equals("true")) {
+            client = new JedisIRedisClient(new JedisPool(new JedisPoolConfig(), "localhost"));
+        }
+        else {
+            client = new RedisMock();
+        }
+    }
+
+    private void await(RedisReliableWorker<String> worker, long handled) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000L;
+        while (worker.handled() < handled && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+    }
+
+    @Test public void workerShouldHandleAndAckEveryElement() throws WrongTypeException, NotImplementedException, InterruptedException {
+        String k = rander.randkey(), ik = rander.randkey();
+        for (int i = 0; i < 20; ++i) {
+            client.lpush(k, String.valueOf(i));
+        }
+        final Set<String> seen = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        RedisReliableWorker<String> worker = new RedisReliableWorker<String>(RedisReliableConsumer.ListConsumer(client), k, ik, new IRedisReliableHandler<String>() {
+                @Override public void handle(String element) {
+                    seen.add(element);
+                }
+            }, 4).prefetch(8).pollTimeout(50L).start();
+        await(worker, 20L);
+        assertEquals(true, worker.drain(10L, TimeUnit.SECONDS));
+        assertEquals(20, seen.size());
+        assertEquals(20L, worker.handled());
+        assertEquals(20L, worker.acked());
+        assertEquals(20L, worker.latency().count());
+        assertEquals(0L, (long)client.llen(k));
+        assertEquals(0L, (long)client.llen(ik));
+    }
+
+    @Test public void workerShouldFailElementsTheHandlerThrowsOn() throws WrongTypeException, NotImplementedException, InterruptedException {
+        String k = rander.randkey(), ik = rander.randkey();
+        client.lpush(k, "v1", "v2");
+        final Set<String> thrown = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        RedisReliableWorker<String> worker = new RedisReliableWorker<String>(RedisReliableConsumer.ListConsumer(client), k, ik, new IRedisReliableHandler<String>() {
+                @Override public void handle(String element) throws Exception {
+                    if (element.equals("v2") && thrown.add(element)) {
+                        throw new Exception("once");
+                    }
+                }
+            }, 2).pollTimeout(50L).start();
+        await(worker, 2L);
+        assertEquals(true, worker.drain(10L, TimeUnit.SECONDS));
+        assertEquals(1L, worker.failed());
+        assertEquals(2L, worker.handled());
+        assertEquals(0L, (long)client.llen(k));
+        assertEquals(0L, (long)client.llen(ik));
+    }
+
+    @Test public void drainShouldFailWhatAHandlerFinishesAfterItTimesOut() throws WrongTypeException, NotImplementedException, InterruptedException {
+        String k = rander.randkey(), ik = rander.randkey();
+        client.lpush(k, "v1");
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        RedisReliableWorker<String> worker = new RedisReliableWorker<String>(RedisReliableConsumer.ListConsumer(client), k, ik, new IRedisReliableHandler<String>() {
+                @Override public void handle(String element) throws Exception {
+                    started.countDown();
+                    release.await();
+                }
+            }, 1).pollTimeout(50L).ackLinger(1L).start();
+        assertEquals(true, started.await(10L, TimeUnit.SECONDS));
+        assertEquals(false, worker.drain(100L, TimeUnit.MILLISECONDS));
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 10000L;
+        while (worker.inFlight() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals(1L, worker.handled());
+        assertEquals(0L, worker.acked());
+        assertEquals("v1", client.lindex(k, 0L));
+        assertEquals(0L, (long)client.llen(ik));
+    }
+
+}
@@ -0,0 +1,47 @@
+package org.rarefiedredis.util;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+public class RedisCodecsTest {
+
+    @Test public void longCodecShouldRoundTrip() {
+        assertEquals(Long.MAX_VALUE, (long)RedisCodecs.LONG.decode(RedisCodecs.LONG.encode(Long.MAX_VALUE)));
+        assertEquals(-42L, (long)RedisCodecs.LONG.decode(RedisCodecs.LONG.encode(-42L)));
+        assertEquals(true, RedisCodecs.LONG.encode(Long.MAX_VALUE).length() < String.valueOf(Long.MAX_VALUE).length());
+    }
+
+    @Test public void bytesCodecShouldRoundTripEveryByte() {
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < bytes.length; ++i) {
+            bytes[i] = (byte)i;
+        }
+        byte[] decoded = RedisCodecs.BYTES.decode(RedisCodecs.BYTES.encode(bytes));
+        assertEquals(bytes.length, decoded.length);
+        for (int i = 0; i < bytes.length; ++i) {
+            assertEquals(bytes[i], decoded[i]);
+        }
+    }
+
+    @Test public void compressedCodecShouldLeaveShortValuesRaw() {
+        IRedisCodec<String> codec = RedisCodecs.compressed(RedisCodecs.STRING, 64);
+        String encoded = codec.encode("short");
+        assertEquals(RedisCompressingCodec.RAW, encoded.charAt(0));
+        assertEquals("short", codec.decode(encoded));
+    }
+
+    @Test public void compressedCodecShouldDeflateLongValues() {
+        IRedisCodec<String> codec = RedisCodecs.compressed(RedisCodecs.STRING, 64);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; ++i) {
+            builder.append("{\"id\":").append(i).append(",\"state\":\"queued\u00e9\"}");
+        }
+        String value = builder.toString();
+        String encoded = codec.encode(value);
+        assertEquals(RedisCompressingCodec.DEFLATED, encoded.charAt(0));
+        assertEquals(true, encoded.length() < value.length() / 4);
+        assertEquals(value, codec.decode(encoded));
+        assertEquals(encoded, codec.encode(value));
+    }
+
+}
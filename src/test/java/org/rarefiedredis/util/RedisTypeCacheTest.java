@@ -0,0 +1,86 @@
+package org.rarefiedredis.util;
+
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.Ignore;
+import static org.junit.Assert.assertEquals;
+
+import org.rarefiedredis.RandomKey;
+import org.rarefiedredis.redis.RedisMock;
+import org.rarefiedredis.redis.IRedisClient;
+import org.rarefiedredis.redis.WrongTypeException;
+import org.rarefiedredis.redis.NotImplementedException;
+import org.rarefiedredis.redis.SyntaxErrorException;
+import org.rarefiedredis.redis.adapter.jedis.JedisIRedisClient;
+
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.List;
+import java.util.ArrayList;
+
+public class RedisTypeCacheTest {
+
+    private IRedisClient client;
+    private RandomKey rander;
+
+    @Before public void initClient() {
+        rander = new RandomKey();
+        String integration = System.getProperty("integration");
+        if (integration != null && integration.equals("true")) {
+            client = new JedisIRedisClient(new JedisPool(new JedisPoolConfig(), "localhost"));
+        }
+        else {
+            client = new RedisMock();
+        }
+    }
+
+    @Test public void typeShouldOnlyAskTheServerOnAMiss() throws WrongTypeException, NotImplementedException {
+        RedisTypeCache cache = new RedisTypeCache();
+        String k = rander.randkey();
+        client.lpush(k, "v");
+        assertEquals("list", cache.type(client, k));
+        assertEquals("list", cache.type(client, k));
+        assertEquals("list", cache.type(client, k));
+        assertEquals(1L, cache.misses());
+        assertEquals(2L, cache.hits());
+        assertEquals(true, cache.hitRate() > 0.6 && cache.hitRate() < 0.7);
+    }
+
+    @Test public void typeShouldNotCacheAMissingKey() throws WrongTypeException, NotImplementedException {
+        RedisTypeCache cache = new RedisTypeCache();
+        String k = rander.randkey();
+        assertEquals("none", cache.type(client, k));
+        assertEquals(null, cache.get(k));
+        assertEquals(0, cache.size());
+    }
+
+    @Test public void invalidateShouldDropTheKey() {
+        RedisTypeCache cache = new RedisTypeCache();
+        cache.put("k", "list");
+        assertEquals("list", cache.get("k"));
+        cache.invalidate("k");
+        assertEquals(null, cache.get("k"));
+        assertEquals(1L, cache.invalidations());
+    }
+
+    @Test public void cacheShouldEvictTheLeastRecentlyUsedKey() {
+        RedisTypeCache cache = new RedisTypeCache(2, 60000L);
+        cache.put("a", "list");
+        cache.put("b", "set");
+        cache.get("a");
+        cache.put("c", "zset");
+        assertEquals(2, cache.size());
+        assertEquals("list", cache.get("a"));
+        assertEquals(null, cache.get("b"));
+        assertEquals("zset", cache.get("c"));
+    }
+
+    @Test public void cacheShouldExpireEntries() throws InterruptedException {
+        RedisTypeCache cache = new RedisTypeCache(16, 10L);
+        cache.put("a", "list");
+        Thread.sleep(20L);
+        assertEquals(null, cache.get("a"));
+    }
+
+}